@@ -1,4 +1,5 @@
 import storage.Storage;
+import storage.repository.ExpenseRepositories;
 
 import java.io.IOException;
 import java.util.Scanner;
@@ -8,9 +9,10 @@ public class ExpenseTracker
     Storage storage;
     Scanner keyboard;
 
-    public ExpenseTracker()
+    public ExpenseTracker(String backend)
     {
-        storage = new Storage();
+        storage = new Storage("csv_data", backend);
+        storage.startWatching();
         keyboard = new Scanner(System.in);
     }
 
@@ -31,6 +33,15 @@ public class ExpenseTracker
             System.out.println("[7].......Filter Expenses by Category");
             System.out.println("[8].......Set Monthly Budget");
             System.out.println("[9].......View Budget Status");
+            System.out.println("[10]......View Top Merchants");
+            System.out.println("[11]......Import Bank Statement");
+            System.out.println("[12]......Add Recurring Expense");
+            System.out.println("[13]......View Recurring Expenses");
+            System.out.println("[14]......View Expenses in Date Range");
+            System.out.println("[15]......Open Archive Ledger");
+            System.out.println("[16]......View Rankings");
+            System.out.println("[17]......Run Query");
+            System.out.println("[18]......View Category Statistics");
             System.out.println("[0].......Exit App");
             System.out.print("\nEnter your choice: ");
             choice = keyboard.nextInt();
@@ -47,6 +58,15 @@ public class ExpenseTracker
                 case 7 -> storage.viewExpensesByCategory();
                 case 8 -> storage.setMonthlyBudget();
                 case 9 -> storage.viewBudgetStatus();
+                case 10 -> storage.viewTopMerchants();
+                case 11 -> storage.importBankStatement();
+                case 12 -> storage.addRecurringExpense();
+                case 13 -> storage.viewRecurringExpenses();
+                case 14 -> storage.viewExpensesInDateRange();
+                case 15 -> storage.viewArchiveLedger();
+                case 16 -> storage.viewRankings();
+                case 17 -> storage.runQuery();
+                case 18 -> storage.viewCategoryStatistics();
                 case 0 -> System.out.println("Exiting...");
                 default -> System.out.println("Invalid choice!");
             }
@@ -54,22 +74,41 @@ public class ExpenseTracker
         while(choice != 0);
     }
 
-    // Calling Save methods to save the data
+    // Every change is saved when it is made, so closing the storage only flushes what is pending.
+    // Saving everything again here would make other processes sharing the data directory reload it.
     public void FinalJobs()
     {
-        storage.saveExpenses();
-        storage.saveBudget();
+        storage.close();
     }
 
     /**
      * Entry point of the program.
      * Starts the application by calling the Menu() method.
+     * <p>
+     * The expenses are stored in the backend named by {@code --backend=csv|binary|memory},
+     * or by the {@code expense.backend} system property when the argument is missing.
      *
-     * @param args command-line arguments (not used)
+     * @param args command-line arguments: optionally {@code --backend=<name>}
      */
     public static void main(String[] args)
     {
-        ExpenseTracker Program = new ExpenseTracker();
+        String backend = ExpenseRepositories.defaultBackend();
+        for (String arg: args)
+        {
+            if (arg.startsWith("--backend="))
+                backend = arg.substring("--backend=".length());
+        }
+
+        ExpenseTracker Program;
+        try
+        {
+            Program = new ExpenseTracker(backend);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            System.out.println(ex.getMessage());
+            return;
+        }
         Program.Menu();
         Program.FinalJobs();
         Program.keyboard.close();
@@ -0,0 +1,143 @@
+package model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * A cron-like day pattern with three fields: day of month, month and day of week.
+ * <p>
+ * Each field accepts {@code *}, single values, ranges ({@code 1-5}), lists ({@code 1,15})
+ * and steps ({@code *}{@code /2}, {@code 1-31/7}). Months and days of week may also be
+ * written by their three-letter names, e.g. {@code "1 JAN,JUL *"} or {@code "* * MON-FRI"}.
+ * A day matches when all three fields match.
+ */
+public class CronSpec
+{
+    private static final String[] MONTHS =
+            { "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC" };
+    private static final String[] DAYS = { "MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN" };
+
+    private final String text;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+
+    /**
+     * Parses a pattern such as {@code "1,15 * *"}.
+     *
+     * @param text the pattern
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    public CronSpec(String text)
+    {
+        String[] fields = text.trim().split("\\s+");
+        if (fields.length != 3)
+            throw new IllegalArgumentException("Expected 3 fields (day-of-month month day-of-week): " + text);
+
+        this.text = String.join(" ", fields);
+        daysOfMonth = parseField(fields[0], 1, 31, null);
+        months = parseField(fields[1], 1, 12, MONTHS);
+        daysOfWeek = parseField(fields[2], 1, 7, DAYS);
+    }
+
+    public boolean matches(LocalDate date)
+    {
+        return daysOfMonth.get(date.getDayOfMonth())
+                && months.get(date.getMonthValue())
+                && daysOfWeek.get(date.getDayOfWeek().getValue());
+    }
+
+    /**
+     * @return true if at least one day of the week can match, used to reject
+     * patterns like {@code "31 FEB *"} that never occur
+     */
+    public boolean canMatch()
+    {
+        for (int month = months.nextSetBit(1); month >= 0; month = months.nextSetBit(month + 1))
+        {
+            int longest = month == 2 ? 29 : LocalDate.of(2001, month, 1).lengthOfMonth();
+            int day = daysOfMonth.nextSetBit(1);
+            if (day >= 0 && day <= longest && !daysOfWeek.isEmpty())
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return text;
+    }
+
+    private static BitSet parseField(String field, int min, int max, String[] names)
+    {
+        BitSet bits = new BitSet(max + 1);
+        for (String part: field.toUpperCase(Locale.ROOT).split(","))
+        {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0)
+            {
+                step = parseValue(part.substring(slash + 1), 1, Integer.MAX_VALUE, null);
+                part = part.substring(0, slash);
+            }
+
+            int from;
+            int to;
+            if (part.equals("*"))
+            {
+                from = min;
+                to = max;
+            }
+            else if (part.indexOf('-') > 0)
+            {
+                from = parseValue(part.substring(0, part.indexOf('-')), min, max, names);
+                to = parseValue(part.substring(part.indexOf('-') + 1), min, max, names);
+            }
+            else
+            {
+                from = parseValue(part, min, max, names);
+                to = slash >= 0 ? max : from;
+            }
+
+            if (from > to)
+                throw new IllegalArgumentException("Invalid range: " + part);
+            for (int value = from; value <= to; value += step)
+            {
+                bits.set(value);
+            }
+        }
+        return bits;
+    }
+
+    private static int parseValue(String value, int min, int max, String[] names)
+    {
+        if (names != null)
+        {
+            for (int i = 0; i < names.length; i++)
+            {
+                if (names[i].equals(value))
+                    return i + min;
+            }
+        }
+
+        int number;
+        try
+        {
+            number = Integer.parseInt(value);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("Invalid value: " + value);
+        }
+
+        // cron traditionally allows 0 for Sunday
+        if (names == DAYS && number == 0)
+            number = DayOfWeek.SUNDAY.getValue();
+        if (number < min || number > max)
+            throw new IllegalArgumentException("Value out of range " + min + "-" + max + ": " + value);
+        return number;
+    }
+}
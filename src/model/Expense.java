@@ -2,19 +2,26 @@ package model;
 
 import java.time.LocalDate;
 
+/**
+ * A single expense record.
+ * <p>
+ * Expenses are immutable so that a ledger snapshot can be shared with readers while
+ * writers keep working. Editing an expense means creating a changed copy with one of
+ * the {@code with...} methods and storing that copy in place of the original.
+ */
 public class Expense
 {
-    private static int nextId = 1;
+    private static volatile IdAllocator idAllocator = new SequentialIdAllocator();
     private final int id;
-    private String name;
-    private double amount;
-    private LocalDate dateOfExpense;
-    private String category;
+    private final String name;
+    private final double amount;
+    private final LocalDate dateOfExpense;
+    private final String category;
 
     // Constructor that auto-generates ID
     public Expense(String name, double amount, LocalDate dateOfExpense, String category)
     {
-        this.id = nextId++;
+        this.id = allocateId();
         this.name = name;
         this.amount = amount;
         this.dateOfExpense = dateOfExpense;
@@ -31,10 +38,33 @@ public class Expense
         this.category = category;
 
         // This part keeps the automatic ID counter in sync with the highest ID already used to avoid duplicates.
-        if (id >= nextId)
-        {
-            nextId = id + 1;
-        }
+        reserveId(id);
+    }
+
+    /**
+     * Replaces the allocator of automatically generated IDs, for example with one that
+     * is shared by several processes. IDs reserved so far are not carried over.
+     *
+     * @param allocator the allocator to use from now on
+     */
+    public static void setIdAllocator(IdAllocator allocator)
+    {
+        idAllocator = allocator;
+    }
+
+    // The allocator is shared by all writer threads and is thread-safe itself
+    private static int allocateId()
+    {
+        return idAllocator.next();
+    }
+
+    /**
+     * Makes sure that automatically generated IDs are never equal to the given one.
+     * Used for expenses that are stored but not loaded, such as archived ones.
+     */
+    public static void reserveId(int id)
+    {
+        idAllocator.reserve(id);
     }
 
     public int getId() {
@@ -45,45 +75,60 @@ public class Expense
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public Expense withName(String name) {
+        return new Expense(id, name, amount, dateOfExpense, category);
     }
 
     public double getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
-        this.amount = amount;
+    public Expense withAmount(double amount) {
+        return new Expense(id, name, amount, dateOfExpense, category);
     }
 
     public LocalDate getDateOfExpense() {
         return dateOfExpense;
     }
 
-    public void setDateOfExpense(LocalDate dateOfExpense) {
-        this.dateOfExpense = dateOfExpense;
+    public Expense withDateOfExpense(LocalDate dateOfExpense) {
+        return new Expense(id, name, amount, dateOfExpense, category);
     }
 
     public String getCategory() {
         return category;
     }
 
-    public void setCategory(String category) {
-        this.category = category;
+    public Expense withCategory(String category) {
+        return new Expense(id, name, amount, dateOfExpense, category);
     }
 
     /**
      * Converts an expense into a CSV-formatted line.
      * <p>
      * The returned string contains the expense fields separated by commas,
-     * ordered as: id, name, amount, dateOfExpense, category.
+     * ordered as: id, name, amount, dateOfExpense, category. Text fields that
+     * contain a comma, a quote or a line break are enclosed in quotes.
      *
      * @return a CSV representation of the expense
      */
     public String AsCsvLine()
     {
-        return id + "," + name + "," + amount + "," + dateOfExpense + "," + category;
+        return id + "," + quote(name) + "," + amount + "," + dateOfExpense + "," + quote(category);
+    }
+
+    /**
+     * Encloses a CSV field in quotes, doubling the quotes in it, if it contains a comma,
+     * a quote or a line break (RFC 4180). Other fields are returned as they are.
+     *
+     * @param field the field value
+     * @return the field as it is written to a CSV record
+     */
+    public static String quote(String field)
+    {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0)
+            return field;
+        return '"' + field.replace("\"", "\"\"") + '"';
     }
 
     /**
@@ -0,0 +1,19 @@
+package model;
+
+/**
+ * Hands out the IDs of new expenses.
+ * <p>
+ * Implementations must be thread-safe, because expenses are created by several threads.
+ */
+public interface IdAllocator
+{
+    /**
+     * Returns an ID that has not been handed out or reserved before.
+     */
+    int next();
+
+    /**
+     * Records that an ID is already in use, so it is never handed out.
+     */
+    void reserve(int id);
+}
@@ -0,0 +1,289 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rule for an expense that repeats on a schedule, such as rent or a subscription.
+ * <p>
+ * Only the rule itself is stored. Its occurrences are virtual: they are generated on
+ * demand for the requested date range and never written to the expense file. Counting
+ * the occurrences of a daily, weekly or monthly rule is pure arithmetic, so a summary
+ * costs the same whatever the number of occurrences. Cron-like rules are counted by
+ * testing each day of the range, which depends on the length of the range only.
+ * <p>
+ * Occurrences are returned as {@link Expense} objects whose ID is the negated rule ID,
+ * so they can be told apart from stored expenses.
+ */
+public class RecurringExpense
+{
+    public enum Frequency
+    {
+        DAILY,
+        WEEKLY,
+        MONTHLY,
+        CRON
+    }
+
+    // Fields of a record written by AsCsvLine
+    public static final int FIELDS = 9;
+
+    private static int nextId = 1;
+    private final int id;
+    private final String name;
+    private final double amount;
+    private final String category;
+    private final LocalDate startDate;
+    private final LocalDate endDate; // null means open-ended
+    private final Frequency frequency;
+    private final int interval;
+    private final CronSpec cron; // only used by CRON rules
+
+    // Constructor that auto-generates ID
+    public RecurringExpense(String name, double amount, String category, LocalDate startDate, LocalDate endDate,
+                            Frequency frequency, int interval, CronSpec cron)
+    {
+        this(allocateId(), name, amount, category, startDate, endDate, frequency, interval, cron);
+    }
+
+    // Constructor for loading existing rules (ensures existing rules keep their original IDs)
+    public RecurringExpense(int id, String name, double amount, String category, LocalDate startDate, LocalDate endDate,
+                            Frequency frequency, int interval, CronSpec cron)
+    {
+        if (interval < 1)
+            throw new IllegalArgumentException("Interval must be at least 1.");
+        if (frequency == Frequency.CRON && cron == null)
+            throw new IllegalArgumentException("A cron rule needs a pattern.");
+
+        this.id = id;
+        this.name = name;
+        this.amount = amount;
+        this.category = category;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.frequency = frequency;
+        this.interval = interval;
+        this.cron = cron;
+
+        reserveId(id);
+    }
+
+    private static synchronized int allocateId()
+    {
+        return nextId++;
+    }
+
+    private static synchronized void reserveId(int id)
+    {
+        if (id >= nextId)
+        {
+            nextId = id + 1;
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public CronSpec getCron() {
+        return cron;
+    }
+
+    /**
+     * Counts the occurrences between two dates, both inclusive.
+     *
+     * @param from the first day of the range
+     * @param to   the last day of the range
+     * @return the number of occurrences in the range
+     */
+    public long countBetween(LocalDate from, LocalDate to)
+    {
+        LocalDate lo = from.isBefore(startDate) ? startDate : from;
+        LocalDate hi = endDate != null && endDate.isBefore(to) ? endDate : to;
+        if (lo.isAfter(hi))
+            return 0;
+
+        switch (frequency)
+        {
+            case DAILY, WEEKLY ->
+            {
+                long step = stepDays();
+                long first = Math.floorDiv(lo.toEpochDay() - startDate.toEpochDay() + step - 1, step);
+                long last = Math.floorDiv(hi.toEpochDay() - startDate.toEpochDay(), step);
+                return Math.max(0, last - first + 1);
+            }
+            case MONTHLY ->
+            {
+                long first = firstMonthlyIndex(lo);
+                long last = lastMonthlyIndex(hi);
+                return Math.max(0, last - first + 1);
+            }
+            default ->
+            {
+                long count = 0;
+                for (LocalDate day = lo; !day.isAfter(hi); day = day.plusDays(1))
+                {
+                    if (cron.matches(day))
+                        count++;
+                }
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Returns the total amount of the occurrences between two dates, both inclusive.
+     */
+    public double amountBetween(LocalDate from, LocalDate to)
+    {
+        return countBetween(from, to) * amount;
+    }
+
+    /**
+     * Generates the occurrences between two dates, both inclusive, in date order.
+     *
+     * @param from the first day of the range
+     * @param to   the last day of the range
+     * @return the virtual expenses of this rule in the range
+     */
+    public List<Expense> occurrencesBetween(LocalDate from, LocalDate to)
+    {
+        List<Expense> result = new ArrayList<>();
+        LocalDate lo = from.isBefore(startDate) ? startDate : from;
+        LocalDate hi = endDate != null && endDate.isBefore(to) ? endDate : to;
+        if (lo.isAfter(hi))
+            return result;
+
+        switch (frequency)
+        {
+            case DAILY, WEEKLY ->
+            {
+                long step = stepDays();
+                long first = Math.floorDiv(lo.toEpochDay() - startDate.toEpochDay() + step - 1, step);
+                for (LocalDate day = startDate.plusDays(first * step); !day.isAfter(hi); day = day.plusDays(step))
+                {
+                    result.add(occurrence(day));
+                }
+            }
+            case MONTHLY ->
+            {
+                long last = lastMonthlyIndex(hi);
+                for (long k = firstMonthlyIndex(lo); k <= last; k++)
+                {
+                    result.add(occurrence(monthlyOccurrence(k)));
+                }
+            }
+            default ->
+            {
+                for (LocalDate day = lo; !day.isAfter(hi); day = day.plusDays(1))
+                {
+                    if (cron.matches(day))
+                        result.add(occurrence(day));
+                }
+            }
+        }
+        return result;
+    }
+
+    private Expense occurrence(LocalDate date)
+    {
+        return new Expense(-id, name, amount, date, category);
+    }
+
+    private long stepDays()
+    {
+        return frequency == Frequency.WEEKLY ? 7L * interval : interval;
+    }
+
+    // The k-th monthly occurrence keeps the start day, clamped to the length of shorter months
+    private LocalDate monthlyOccurrence(long k)
+    {
+        return startDate.plusMonths(k * interval);
+    }
+
+    private long firstMonthlyIndex(LocalDate lo)
+    {
+        long months = ChronoUnit.MONTHS.between(YearMonth.from(startDate), YearMonth.from(lo));
+        long k = Math.floorDiv(months + interval - 1, interval);
+        if (monthlyOccurrence(k).isBefore(lo))
+            k++;
+        return k;
+    }
+
+    private long lastMonthlyIndex(LocalDate hi)
+    {
+        long months = ChronoUnit.MONTHS.between(YearMonth.from(startDate), YearMonth.from(hi));
+        long k = Math.floorDiv(months, interval);
+        if (monthlyOccurrence(k).isAfter(hi))
+            k--;
+        return k;
+    }
+
+    /**
+     * Describes the schedule in words, e.g. "every 2 weeks" or "cron 1,15 * *".
+     */
+    public String describeSchedule()
+    {
+        return switch (frequency)
+        {
+            case DAILY -> interval == 1 ? "every day" : "every " + interval + " days";
+            case WEEKLY -> interval == 1 ? "every week" : "every " + interval + " weeks";
+            case MONTHLY -> interval == 1 ? "every month" : "every " + interval + " months";
+            case CRON -> "cron " + cron;
+        };
+    }
+
+    /**
+     * Converts a rule into a CSV-formatted line.
+     * <p>
+     * The fields are ordered as: id, name, amount, category, startDate, endDate,
+     * frequency, interval, cron. An open end date and a missing cron pattern are left empty.
+     *
+     * @return a CSV representation of the rule
+     */
+    public String AsCsvLine()
+    {
+        return id + "," + Expense.quote(name) + "," + amount + "," + Expense.quote(category) + "," + startDate + ","
+                + (endDate == null ? "" : endDate) + "," + frequency + "," + interval + ","
+                + (cron == null ? "" : Expense.quote(cron.toString()));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Recurring ID: " + id + ", Description: " + name + ", Amount: " + "$" + amount + ", Category: " + category
+                + ", Schedule: " + describeSchedule() + ", From: " + startDate + ", Until: "
+                + (endDate == null ? "open" : endDate);
+    }
+}
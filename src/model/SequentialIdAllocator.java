@@ -0,0 +1,25 @@
+package model;
+
+/**
+ * Hands out IDs from a counter kept in memory, one higher than the highest ID seen so far.
+ * Suitable as long as a single process uses the data directory.
+ */
+public class SequentialIdAllocator implements IdAllocator
+{
+    private int nextId = 1;
+
+    @Override
+    public synchronized int next()
+    {
+        return nextId++;
+    }
+
+    @Override
+    public synchronized void reserve(int id)
+    {
+        if (id >= nextId)
+        {
+            nextId = id + 1;
+        }
+    }
+}
@@ -1,104 +1,629 @@
 package storage;
 
+import model.CronSpec;
 import model.Expense;
+import model.RecurringExpense;
+import storage.cache.ExpenseReport;
+import storage.cache.ReportCache;
+import storage.cold.ColdStore;
+import storage.csv.CsvRecordReader;
+import storage.csv.ExpenseCsvReader;
+import storage.events.ExpenseEvent;
+import storage.events.ExpenseEventBus;
+import storage.events.ExpenseListener;
+import storage.imports.BankStatementImporter;
+import storage.imports.ImportLayout;
+import storage.imports.ImportResult;
+import storage.ledger.PersistentVector;
+import storage.offheap.OffHeapLedger;
+import storage.query.Query;
+import storage.query.QueryEngine;
+import storage.query.QueryResult;
+import storage.query.Rankings;
+import storage.repository.ExpenseRepositories;
+import storage.repository.ExpenseRepository;
+import storage.repository.StoredChange;
+import storage.shared.BlockIdAllocator;
+import storage.shared.LedgerLock;
+import storage.shared.LedgerVersion;
+import storage.tail.LedgerWatcher;
+import storage.views.CategoryStatsView;
+import storage.views.CategoryTotalsView;
+import storage.views.ExpenseIndexView;
+import storage.views.LedgerTotalsView;
+import storage.views.MonthlyTotalsView;
+import storage.views.TopMerchantsView;
 
 import java.io.*;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.InputMismatchException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class Storage
 {
-    final String dirPath = "csv_data";
-    final String expenseList = "expenses.csv";
-    final String budget = "budget.csv";
-    private final List<Expense> expenses;
+    final String dirPath;
+    final String recurringList = "recurring.csv";
+    final String inboxDir = "inbox";
+    final String processedDir = "processed";
+    final String coldDir = "cold";
+    final String lockFile = "ledger.lock";
+    final String versionFile = "ledger.version";
+    final String idFile = "ids.next";
+    final int idBlockSize = 64;
+    final int eventQueueCapacity = 1024;
+    final int importBatchSize = 5000;
+    final int reportCacheSize = 256;
+    private final Object writeLock = new Object();
+    private final Object saveLock = new Object();
+    private volatile PersistentVector<Expense> expenses = PersistentVector.empty();
+    private final Map<Integer, Integer> positions = new HashMap<>(); // ID -> index in expenses, guarded by writeLock
+    private final List<RecurringExpense> recurring = new CopyOnWriteArrayList<>();
     private double monthlyBudget = 0;
-    private double totalSpent = 0;
     Scanner keyboard;
 
+    // Persistence of the ledger and the budget, in the format selected at startup
+    private final ExpenseRepository repository; // used while holding saveLock
+
+    // Following the data directory and the inbox for changes made by other programs
+    private LedgerWatcher watcher;
+
+    // Immutable archives of the closed years; only the current year is kept in memory
+    private final ColdStore coldStore;
+
+    // Coordination with other processes that use the same data directory
+    private final LedgerLock ledgerLock;
+    private final LedgerVersion ledgerVersion;
+    private volatile long knownGeneration; // changed only while holding saveLock
+
+    // Change events and the aggregates that are kept current from them
+    private final ExpenseEventBus eventBus;
+    private final LedgerTotalsView ledgerTotals = new LedgerTotalsView();
+    private final CategoryTotalsView categoryTotals = new CategoryTotalsView();
+    private final MonthlyTotalsView monthlyTotals = new MonthlyTotalsView();
+    private final TopMerchantsView topMerchants = new TopMerchantsView();
+    private final ExpenseIndexView expenseIndex = new ExpenseIndexView();
+    private final CategoryStatsView categoryStats = new CategoryStatsView();
+    private final ReportCache reportCache = new ReportCache(reportCacheSize);
+
+    // Answers queries from the indexes, views and archives above
+    private final QueryEngine queryEngine;
+
     /**
      * Initializes the Storage system by setting up internal data structures,
-     * preparing input handling, creating required directories and files, and
-     * loading existing expense and budget data from disk.
+     * preparing input handling, creating required directories and files,
+     * loading existing expense and budget data from disk, moving the expenses of
+     * closed years into the cold archives and building the materialized views from
+     * the expenses of the current year. Data is kept in the default
+     * {@code csv_data} directory, in the format selected by
+     * {@link ExpenseRepositories#defaultBackend()}.
      */
     public Storage()
     {
-        expenses = new ArrayList<>();
+        this("csv_data");
+    }
+
+    /**
+     * Initializes the Storage system like {@link #Storage()}, keeping the data files in
+     * the given directory instead of the default one.
+     *
+     * @param dirPath the directory that holds the data files
+     */
+    public Storage(String dirPath)
+    {
+        this(dirPath, ExpenseRepositories.defaultBackend());
+    }
+
+    /**
+     * Initializes the Storage system like {@link #Storage()}, keeping the data files in
+     * the given directory and storing the expenses with the given backend.
+     *
+     * @param dirPath the directory that holds the data files
+     * @param backend the storage format of the expenses: csv, binary or memory
+     * @throws IllegalArgumentException if the backend name is unknown
+     */
+    public Storage(String dirPath, String backend)
+    {
+        this.dirPath = dirPath;
         keyboard = new Scanner(System.in);
+        eventBus = new ExpenseEventBus(eventQueueCapacity);
 
         createDataDirectory();
-        createExpenseFile();
-        createBudgetFile();
-        loadExpenses();
+        createRecurringFile();
+
+        try
+        {
+            ledgerLock = new LedgerLock(Path.of(dirPath, lockFile));
+            ledgerVersion = new LedgerVersion(Path.of(dirPath, versionFile));
+            Expense.setIdAllocator(new BlockIdAllocator(Path.of(dirPath, idFile), ledgerLock, idBlockSize));
+            coldStore = new ColdStore(Path.of(dirPath, coldDir));
+
+            synchronized (saveLock)
+            {
+                // opening may convert the stored files, which must not race with another instance
+                ledgerLock.lock();
+                try
+                {
+                    repository = ExpenseRepositories.open(backend, Path.of(dirPath));
+                    loadExpenses();
+                    knownGeneration = ledgerVersion.read();
+                    archiveClosedYears();
+                }
+                finally
+                {
+                    ledgerLock.unlock();
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException("Cannot open the data directory " + dirPath, ex);
+        }
         loadBudget();
+        loadRecurring();
+
+        ledgerTotals.rebuild(expenses);
+        categoryTotals.rebuild(expenses);
+        monthlyTotals.rebuild(expenses);
+        topMerchants.rebuild(expenses);
+        expenseIndex.rebuild(expenses);
+        categoryStats.rebuild(expenses);
+        eventBus.addSyncListener(ledgerTotals);
+        eventBus.addSyncListener(categoryTotals);
+        eventBus.addSyncListener(monthlyTotals);
+        eventBus.addSyncListener(topMerchants);
+        eventBus.addSyncListener(expenseIndex);
+        eventBus.addSyncListener(categoryStats);
+        eventBus.addSyncListener(reportCache);
+
+        queryEngine = new QueryEngine(this::snapshot, expenseIndex, ledgerTotals, categoryTotals, monthlyTotals,
+                coldStore, recurring);
     }
 
     /**
-     * Creates the application data directory if it does not already exist.
-     * The directory path is defined by {@code dirPath}.
-     * This method ensures that the application has a proper storage location
-     * for task files. If the directory is successfully created, the path is printed.
-     * If it already exists, a message indicating that is displayed.
+     * Registers a listener that is notified about every added, updated and deleted expense.
+     * Listeners are called from a background dispatcher thread, never from the writer.
+     *
+     * @param listener the listener to register
      */
-    public void createDataDirectory()
+    public void addListener(ExpenseListener listener)
     {
-        File directory = new File(dirPath);
-        if (!directory.exists())
+        eventBus.addListener(listener);
+    }
+
+    /**
+     * Returns the current version of the ledger.
+     * <p>
+     * The returned list is immutable and never changes, even while other threads add,
+     * update or delete expenses, so long-running reports and exports can iterate it
+     * without locking and always see a consistent state.
+     *
+     * @return an immutable snapshot of all expenses
+     */
+    public List<Expense> snapshot()
+    {
+        return expenses;
+    }
+
+    /**
+     * Adds an expense to the ledger and appends it to the expense file.
+     *
+     * @param expense the expense to add
+     */
+    public void addExpense(Expense expense)
+    {
+        underLedgerLock(null, () ->
         {
-            if (directory.mkdirs())
-                System.out.println("Directory created: " + directory.getAbsolutePath());
+            commitAdd(expense);
+            writeAppended(List.of(expense));
+            return null;
+        });
+    }
+
+    /**
+     * Replaces an expense with its edited copy and saves the expense file.
+     *
+     * @param before the expense as it was read before editing
+     * @param after  the edited copy, with the same ID
+     * @return true if the update was applied, false if the expense was changed or deleted
+     * meanwhile, by this or another process
+     */
+    public boolean updateExpense(Expense before, Expense after)
+    {
+        return underLedgerLock(false, () ->
+        {
+            if (!commitUpdate(before, after))
+                return false;
+
+            if (repository.update(after))
+                knownGeneration = ledgerVersion.increment();
+            return true;
+        });
+    }
+
+    /**
+     * Deletes the expense with the given ID and saves the expense file.
+     *
+     * @param id the ID of the expense to delete
+     * @return the deleted expense, or null if no expense has this ID
+     */
+    public Expense deleteExpense(int id)
+    {
+        return underLedgerLock(null, () ->
+        {
+            Expense removed = commitDelete(id);
+            if (removed != null && repository.delete(id))
+                knownGeneration = ledgerVersion.increment();
+            return removed;
+        });
+    }
+
+    public LedgerTotalsView getLedgerTotals() {
+        return ledgerTotals;
+    }
+
+    public CategoryTotalsView getCategoryTotals() {
+        return categoryTotals;
+    }
+
+    public MonthlyTotalsView getMonthlyTotals() {
+        return monthlyTotals;
+    }
+
+    public TopMerchantsView getTopMerchants() {
+        return topMerchants;
+    }
+
+    public CategoryStatsView getCategoryStats() {
+        return categoryStats;
+    }
+
+    /**
+     * @return the directory that holds the data files
+     */
+    public String getDirPath() {
+        return dirPath;
+    }
+
+    /**
+     * Stops watching the data directory, closes the expense repository and stops the
+     * event dispatcher after the pending events have been delivered.
+     */
+    public void close()
+    {
+        if (watcher != null)
+            watcher.close();
+
+        synchronized (saveLock)
+        {
+            try
+            {
+                repository.close();
+                ledgerLock.close();
+            }
+            catch (IOException ex)
+            {
+                System.out.println("Error closing the expense repository: " + ex.getMessage());
+            }
         }
-        else
+        eventBus.close();
+    }
+
+    /**
+     * @return the name of the storage format of the expenses, such as csv
+     */
+    public String getBackend() {
+        return repository.getName();
+    }
+
+    /**
+     * Starts following the data directory for expenses written by other programs.
+     * <p>
+     * Lines appended to the expense file are read from where the last read stopped and
+     * added to the ledger. CSV files dropped into the {@code inbox} folder of the data
+     * directory are added to the ledger and the expense file, then moved to
+     * {@code inbox/processed}. Drop files should be written elsewhere and moved into the
+     * inbox when complete. Changes are picked up within a second.
+     */
+    public void startWatching()
+    {
+        File inbox = new File(dirPath, inboxDir);
+        if (!inbox.exists() && !inbox.mkdirs())
         {
-            System.out.println("Directory already exists: " + directory.getAbsolutePath());
+            System.out.println("Cannot create inbox directory: " + inbox.getAbsolutePath());
+            return;
+        }
+
+        try
+        {
+            watcher = new LedgerWatcher(this::ingestExternalChanges, Path.of(dirPath), inbox.toPath());
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Cannot watch the data directory: " + ex.getMessage());
         }
     }
 
     /**
-     * Creates the CSV file used to store tasks inside the application data directory.
-     * If the file already exists, the method prints a message instead of overwriting it.
-     * In case of an I/O error, the exception stack trace is displayed.
+     * Applies the changes that other processes and programs made to the expense file,
+     * and adds the expenses dropped into the inbox, since the last call. Called by the
+     * watcher, but safe to call at any time. The ledger lock is only taken when the files
+     * show a change.
      */
-    public void createExpenseFile()
+    public void ingestExternalChanges()
     {
+        File[] dropped = new File(dirPath, inboxDir).listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".csv"));
+        boolean changed = (dropped != null && dropped.length > 0) || repository.mayHaveAppended();
         try
         {
-            File obj = new File(dirPath, expenseList);
+            changed = changed || ledgerVersion.read() != knownGeneration;
+        }
+        catch (IOException ex)
+        {
+            changed = true;
+        }
+        if (!changed)
+            return;
 
-            // creating the file
-            if (obj.createNewFile())
+        underLedgerLock(null, () ->
+        {
+            ingestInbox();
+            return null;
+        });
+    }
+
+    // Runs an action on the expense file as a short critical section shared with other processes
+    private interface LedgerAction<T>
+    {
+        T run() throws IOException;
+    }
+
+    /**
+     * Runs a change of the expense file while holding the ledger lock of the data directory.
+     * The ledger is first brought up to date with the changes other processes made since
+     * the last access, so the change is applied to the latest version and never overwrites
+     * theirs. If the directory cannot be accessed, an error message is displayed.
+     *
+     * @param failed the value to return if the data directory cannot be accessed
+     * @param action the change to run
+     * @return the value returned by the action, or {@code failed}
+     */
+    private <T> T underLedgerLock(T failed, LedgerAction<T> action)
+    {
+        synchronized (saveLock)
+        {
+            try
             {
-                System.out.println("File created: " + obj.getAbsolutePath());
+                ledgerLock.lock();
+                try
+                {
+                    syncWithDisk();
+                    return action.run();
+                }
+                finally
+                {
+                    ledgerLock.unlock();
+                }
             }
-            else
+            catch (IOException ex)
             {
-                System.out.println("File already exists: " + obj.getAbsolutePath());
+                System.out.println("Error accessing the data directory: " + ex.getMessage());
+                return failed;
             }
         }
-        catch (IOException ex)
+    }
+
+    /**
+     * Brings the ledger up to date with the repository. If another process rewrote the
+     * stored expenses since the last access, which the ledger generation tells, everything
+     * is reloaded. Otherwise only the changes appended since then are read and applied.
+     * Must be called while holding saveLock and the ledger lock.
+     */
+    private void syncWithDisk() throws IOException
+    {
+        long generation = ledgerVersion.read();
+        if (generation != knownGeneration)
         {
-            System.out.println("An error has occurred while creating the File.");
-            ex.printStackTrace();
+            reloadExpenses();
+            knownGeneration = generation;
+            return;
+        }
+
+        List<StoredChange> stored = repository.readAppended();
+        if (stored == null)
+        {
+            reloadExpenses();
+            return;
+        }
+
+        int applied = commitStored(stored);
+        if (applied > 0)
+            System.out.println("\nApplied " + applied + " changes stored by other processes or programs.");
+    }
+
+    /**
+     * Reloads the stored expenses and publishes the differences to the ledger as change events.
+     * Expenses that did not change keep their current objects, so updates that were read
+     * before the reload still apply to them.
+     */
+    private void reloadExpenses() throws IOException
+    {
+        List<Expense> loaded = readRepository();
+
+        synchronized (writeLock)
+        {
+            Map<Integer, Expense> current = new HashMap<>();
+            for (Expense expense: expenses)
+            {
+                current.put(expense.getId(), expense);
+            }
+
+            List<ExpenseEvent> changes = new ArrayList<>();
+            PersistentVector<Expense> reloaded = PersistentVector.empty();
+            for (Expense expense: loaded)
+            {
+                Expense old = current.remove(expense.getId());
+                if (old == null)
+                    changes.add(ExpenseEvent.added(expense));
+                else if (sameValues(old, expense))
+                    expense = old;
+                else
+                    changes.add(ExpenseEvent.updated(old, expense));
+                reloaded = reloaded.plus(expense);
+            }
+            for (Expense removed: current.values())
+            {
+                changes.add(ExpenseEvent.deleted(removed));
+            }
+
+            setLedger(reloaded);
+            for (ExpenseEvent change: changes)
+            {
+                eventBus.publish(change);
+            }
+            if (!changes.isEmpty())
+                System.out.println("\nReloaded the expenses after changes by another process.");
+        }
+
+        if (coldStore.refresh())
+            reportCache.invalidateAll();
+    }
+
+    private static boolean sameValues(Expense a, Expense b)
+    {
+        return a.getName().equals(b.getName()) && a.getAmount() == b.getAmount()
+                && a.getDateOfExpense().equals(b.getDateOfExpense()) && a.getCategory().equals(b.getCategory());
+    }
+
+    // Must be called while holding saveLock and the ledger lock
+    private void ingestInbox()
+    {
+        File inbox = new File(dirPath, inboxDir);
+        File[] files = inbox.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".csv"));
+        if (files == null || files.length == 0)
+            return;
+
+        File processed = new File(inbox, processedDir);
+        if (!processed.exists() && !processed.mkdirs())
+        {
+            System.out.println("Cannot create directory: " + processed.getAbsolutePath());
+            return;
+        }
+
+        for (File file: files)
+        {
+            try
+            {
+                List<Expense> ingested = parseInboxFile(file.toPath());
+                commitAll(ingested);
+                writeAppended(ingested);
+                Files.move(file.toPath(), new File(processed, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("\nIngested " + ingested.size() + " expenses from " + file.getName() + ".");
+            }
+            catch (IOException ex)
+            {
+                System.out.println("Error ingesting " + file.getName() + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Parses the records of a file dropped into the inbox, which are read like the records
+     * of the expense file, so quoted descriptions may contain commas and line breaks.
+     * Records may contain an ID (id, name, amount, date, category) or leave it out
+     * (name, amount, date, category); either way a new ID is assigned. Invalid records
+     * are skipped with a warning.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private List<Expense> parseInboxFile(Path file) throws IOException
+    {
+        List<Expense> result = new ArrayList<>();
+        String source = file.getFileName().toString();
+
+        try (CsvRecordReader records = new CsvRecordReader(Files.newBufferedReader(file, StandardCharsets.UTF_8), ','))
+        {
+            records.expectFields(ExpenseCsvReader.FIELDS - 1, ExpenseCsvReader.FIELDS);
+            while (records.next())
+            {
+                if (records.isBlank() && records.getError() == null)
+                    continue;
+
+                List<String> parts = records.fields();
+                if (records.getError() != null || parts.size() < 4)
+                {
+                    System.out.println("Skipping invalid line " + records.getLine() + " in " + source + ": " + records.getRaw());
+                    continue;
+                }
+
+                try
+                {
+                    int first = parts.size() >= 5 ? 1 : 0;
+                    String description = parts.get(first).trim();
+                    double amount = Double.parseDouble(parts.get(first + 1).trim());
+                    LocalDate date = LocalDate.parse(parts.get(first + 2).trim());
+                    String category = parts.get(first + 3).trim();
+
+                    result.add(new Expense(description, amount, date, category));
+                }
+                catch (NumberFormatException | DateTimeParseException ex)
+                {
+                    System.out.println("Skipping invalid line " + records.getLine() + " in " + source + ": " + records.getRaw());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the application data directory if it does not already exist.
+     * The directory path is defined by {@code dirPath}.
+     * This method ensures that the application has a proper storage location
+     * for task files. If the directory is successfully created, the path is printed.
+     * If it already exists, a message indicating that is displayed.
+     */
+    public void createDataDirectory()
+    {
+        File directory = new File(dirPath);
+        if (!directory.exists())
+        {
+            if (directory.mkdirs())
+                System.out.println("Directory created: " + directory.getAbsolutePath());
+        }
+        else
+        {
+            System.out.println("Directory already exists: " + directory.getAbsolutePath());
         }
     }
 
     /**
-     * Creates the budget CSV file if it does not already exist.
+     * Creates the recurring expenses CSV file if it does not already exist.
      * <p>
      * Attempts to create the file inside the directory specified by {@code dirPath}.
      * Prints a message indicating whether the file was created or already present.
      * Any I/O errors during creation are reported to the user.
      */
-    public void createBudgetFile()
+    public void createRecurringFile()
     {
         try
         {
-            File obj = new File(dirPath, budget);
+            File obj = new File(dirPath, recurringList);
 
             // creating the file
             if (obj.createNewFile())
@@ -200,16 +725,21 @@ public class Storage
 
         // === Create Expense ===
         Expense tmp = new Expense(name, amount, dateOfExpense, category);
-        expenses.add(tmp);
-        totalSpent += tmp.getAmount();
+        // checked before adding, so the expense is not judged against itself
+        String anomaly = categoryStats.findAnomaly(tmp);
+        addExpense(tmp);
+
+        if (anomaly != null)
+        {
+            System.out.println("Warning! This expense is unusually high for its category: " + anomaly);
+        }
 
-        if (monthlyBudget > 0 && totalSpent > monthlyBudget)
+        if (monthlyBudget > 0 && getSpentThisMonth() > monthlyBudget)
         {
             System.out.println("Warning! You have exceeded your monthly budget!");
         }
         System.out.println("\n--------------------------");
         System.out.println("Expense added successfully (" + tmp.getId() + ").");
-        saveExpenses();
 
         Pause();
     }
@@ -223,14 +753,15 @@ public class Storage
         System.out.println("\n\n    Update Expenses.");
         System.out.println("==============================");
 
+        List<Expense> snapshot = listedExpenses();
         int i = 1;
-        for (Expense expense: expenses)
+        for (Expense expense: snapshot)
         {
             System.out.println();
             System.out.println((i++) + ". " + expense.toString());
         }
 
-        if (expenses.isEmpty())
+        if (snapshot.isEmpty())
         {
             System.out.println("\nThere are no expenses.");
             return; // return to the main menu
@@ -251,7 +782,7 @@ public class Storage
                 if (expenseIndex == 0)
                     return;
                 expenseIndex--;
-                if (expenseIndex >= 0 && expenseIndex < expenses.size())
+                if (expenseIndex >= 0 && expenseIndex < snapshot.size())
                     validInput = true;
                 else
                     System.out.println("\nInvalid choice. Please enter a number of an existing expense.");
@@ -264,7 +795,7 @@ public class Storage
         while (!validInput);
 
         // === Updating the expense ===
-        Expense tmp = expenses.get(expenseIndex);
+        Expense tmp = snapshot.get(expenseIndex);
 
         // View details of the selected expense
         viewExpenseDetails(tmp);
@@ -273,9 +804,13 @@ public class Storage
         String editChoice = keyboard.nextLine().trim();
         if (editChoice.equals("Y") || editChoice.equals("y"))
         {
-            updateExpenseData(tmp);
-            saveExpenses();
-            System.out.println("\nThe expense was updated successfully.");
+            Expense edited = updateExpenseData(tmp);
+            if (updateExpense(tmp, edited))
+            {
+                System.out.println("\nThe expense was updated successfully.");
+            }
+            else
+                System.out.println("\nThe expense was changed or deleted in the meantime. Updating was canceled.");
         }
         else
             System.out.println("\nUpdating was canceled.");
@@ -285,10 +820,14 @@ public class Storage
 
     /**
      * Allows the editing of an expense's information.
+     * <p>
+     * Expenses are immutable, so the original is left untouched and the edited
+     * values are returned as a new expense with the same ID.
+     *
      * @param editing the expense object to be edited
-     * @return always returns true indicating that the editing was completed successfully
+     * @return the edited copy of the expense
      */
-    public boolean updateExpenseData(Expense editing)
+    public Expense updateExpenseData(Expense editing)
     {
         System.out.println("\nTo keep the current value simply press Enter.\n");
 
@@ -296,7 +835,7 @@ public class Storage
         System.out.print("New description (" + editing.getName() + "): ");
         String newDescription = keyboard.nextLine().trim();
         if (!newDescription.isBlank())
-            editing.setName(newDescription);
+            editing = editing.withName(newDescription);
 
         // === Update Amount ===
         boolean validInput = false;
@@ -312,7 +851,7 @@ public class Storage
                 }
                 else
                 {
-                    editing.setAmount(Double.parseDouble(newAmount));
+                    editing = editing.withAmount(Double.parseDouble(newAmount));
                     validInput = true;
                 }
 
@@ -333,7 +872,7 @@ public class Storage
             try
             {
                 LocalDate newDate = LocalDate.parse(newDateInput);
-                editing.setDateOfExpense(newDate);
+                editing = editing.withDateOfExpense(newDate);
             }
             catch (DateTimeParseException ex)
             {
@@ -341,7 +880,7 @@ public class Storage
             }
         }
 
-        return true;
+        return editing;
     }
 
     /**
@@ -353,7 +892,8 @@ public class Storage
      */
     public void deleteExpense()
     {
-        if (expenses.isEmpty())
+        List<Expense> snapshot = listedExpenses();
+        if (snapshot.isEmpty())
         {
             System.out.println("No expenses to delete.");
             return;
@@ -364,9 +904,9 @@ public class Storage
         {
             System.out.println("\nSelect the number of the expense you want to delete");
             System.out.println("=========================================================================");
-            for (int i = 0; i < expenses.size(); i++)
+            for (int i = 0; i < snapshot.size(); i++)
             {
-                System.out.println((i + 1) + ". " + expenses.get(i));
+                System.out.println((i + 1) + ". " + snapshot.get(i));
             }
 
             System.out.println("==========================================================================");
@@ -376,11 +916,14 @@ public class Storage
             try
             {
                 choice = Integer.parseInt(input);
-                if (choice > 0 && choice <= expenses.size())
+                if (choice > 0 && choice <= snapshot.size())
                 {
-                    expenses.remove(choice -1);
-                    System.out.println("\nExpense deleted successfully!");
-                    saveExpenses();
+                    if (deleteExpense(snapshot.get(choice - 1).getId()) != null)
+                    {
+                        System.out.println("\nExpense deleted successfully!");
+                    }
+                    else
+                        System.out.println("\nThe expense was already deleted.");
                 }
                 else
                 {
@@ -399,28 +942,46 @@ public class Storage
     }
 
     /**
-     * Displays all expenses currently stored in memory.
-     * <p>
+     * Returns the expenses of the ledger in the order the view, update and delete menus
+     * number them: by ID, which is the order they were added in. The ledger itself is not
+     * kept in that order, because deleting moves its last expense into the gap.
+     */
+    private List<Expense> listedExpenses()
+    {
+        List<Expense> listed = new ArrayList<>(expenses);
+        listed.sort(Comparator.comparingInt(Expense::getId));
+        return listed;
+    }
+
+    /**
+     * Displays all expenses currently stored in memory.
+     * <p>
      * The method prints a formatted list of expenses along with their index.
-     * If there are no expenses, it informs the user. Execution pauses after displaying.
+     * If there are no expenses, it informs the user. Expenses of closed years are
+     * archived and only counted here. Execution pauses after displaying.
      */
     public void viewExpenses()
     {
+        List<Expense> snapshot = listedExpenses();
         int i = 1;
         System.out.println("\nYour expenses: ");
         System.out.println("=====================================================================");
 
-        if (expenses.isEmpty())
+        if (snapshot.isEmpty())
             System.out.println("No expenses yet.");
         else
         {
-            for (Expense expense: expenses)
+            for (Expense expense: snapshot)
             {
                 System.out.println();
                 System.out.println((i++) + ". " + expense.toString());
             }
         }
 
+        if (!coldStore.isEmpty())
+            System.out.println("\n" + coldStore.getCount() + " expenses of the years " + coldStore.getYears()
+                    + " are archived. Use the date range listing to see them.");
+
         Pause();
     }
 
@@ -445,26 +1006,23 @@ public class Storage
     /**
      * Displays a general summary of all recorded expenses.
      * <p>
-     * The method calculates the total number of expenses and their combined amount.
+     * The total number of expenses and their combined amount are read from the
+     * ledger totals view and the cold archive headers, plus the occurrences of
+     * recurring expenses up to today, through the report cache.
      * If no expenses are recorded, it notifies the user and exits.
      */
     public void viewExpenseSummary()
     {
-        int totalCounter = 0;
-        double totalAmount = 0;
+        ExpenseReport summary = getSummary();
+        long totalCounter = summary.getCount();
+        double totalAmount = summary.getAmount();
 
-        if (expenses.isEmpty())
+        if (totalCounter == 0)
         {
             System.out.println("\nNo expenses recorded.");
             return;
         }
 
-        for (Expense expense: expenses)
-        {
-            totalAmount += expense.getAmount();
-            totalCounter++;
-        }
-
         System.out.println("\nSummary of Expenses");
         System.out.println("=====================");
         System.out.println("Total expenses: " + totalCounter);
@@ -476,17 +1034,17 @@ public class Storage
     /**
      * Displays a summary of expenses for a specific month of the current year.
      * <p>
-     * The user is prompted to select a month number (1–12). The method validates the input,
-     * filters expenses matching that month and year, and calculates the total number
-     * and combined amount of those expenses. It then prints the results in a formatted summary.
+     * The user is prompted to select a month number (1–12). The method validates the input
+     * and reads the total number and combined amount of that month's expenses from the
+     * monthly totals view, adding the occurrences of recurring expenses in that month.
+     * The result is cached until an expense of that month changes.
+     * It then prints the results in a formatted summary.
      * <p>
      * If the user enters invalid input or an out-of-range month, an appropriate message is shown.
      */
     public void viewExpenseSummaryForSpecificMonth()
     {
         int currentYear = LocalDate.now().getYear();
-        int counter = 0;
-        double totalAmount = 0.0;
 
         System.out.println("\nExpenses by Month");
         System.out.println("=================");
@@ -500,19 +1058,7 @@ public class Storage
             try
             {
                 monthChosen = Integer.parseInt(input);
-                if (monthChosen > 0 && monthChosen <= 12)
-                {
-                    for (Expense expense: expenses)
-                    {
-                        LocalDate date = expense.getDateOfExpense();
-                        if (date.getYear() == currentYear && date.getMonthValue() == monthChosen)
-                        {
-                            counter++;
-                            totalAmount += expense.getAmount();
-                        }
-                    }
-                }
-                else
+                if (monthChosen < 1 || monthChosen > 12)
                 {
                     System.out.println("\nInvalid month number. Please enter a number between 1 and 12.");
                 }
@@ -524,7 +1070,12 @@ public class Storage
         }
         while (monthChosen < 1 || monthChosen > 12);
 
-        System.out.println("\nExpense summary for " + YearMonth.of(currentYear, monthChosen));
+        YearMonth month = YearMonth.of(currentYear, monthChosen);
+        ExpenseReport summary = getMonthSummary(month);
+        long counter = summary.getCount();
+        double totalAmount = summary.getAmount();
+
+        System.out.println("\nExpense summary for " + month);
         System.out.println("==================================");
         System.out.println("Total expenses: " + counter);
         System.out.println("Total amount: $" + totalAmount);
@@ -536,38 +1087,37 @@ public class Storage
      * Displays all expenses that match a user-selected category and prints a
      * summary of the total count and total amount for that category.
      * <p>
-     * Prompts the user for a category, scans all stored expenses, prints each
-     * matching expense, and then shows the computed totals. If no expenses match,
-     * an informative message is displayed instead.
+     * Prompts the user for a category and reads its totals from the category totals view
+     * and the cold archive headers, adding the occurrences of recurring expenses of that
+     * category up to today. Archived years are only decompressed if they hold expenses
+     * of the category. The listing is cached until an expense of the category changes.
+     * If the category has expenses, the matching expenses are printed followed by the totals.
+     * If no expenses match, an informative message is displayed instead.
      */
     public void viewExpensesByCategory()
     {
-        int totalCounter = 0;
-        double totalAmount = 0;
-
         System.out.println("\n------------------------------");
         System.out.print("Enter category to filter by: ");
         String category = keyboard.nextLine().trim();
 
+        ExpenseReport report = getCategoryReport(category);
+        long totalCounter = report.getCount();
+        double totalAmount = report.getAmount();
+
         System.out.println("\nExpenses in category: " + category);
         System.out.println("==================================");
 
-        for (Expense expense: expenses)
-        {
-            if (expense.getCategory().equalsIgnoreCase(category))
-            {
-                totalAmount += expense.getAmount();
-                totalCounter++;
-                System.out.println(expense);
-            }
-        }
-
         if (totalCounter == 0)
         {
             System.out.println("No expenses found for category " + category);
             return;
         }
 
+        for (Expense expense: report.getExpenses())
+        {
+            System.out.println(expense + (expense.getId() < 0 ? " (recurring)" : ""));
+        }
+
         System.out.println("\nExpense summary for category " + category);
         System.out.println("==================================");
         System.out.println("Total expenses: " + totalCounter);
@@ -577,214 +1127,1364 @@ public class Storage
     }
 
     /**
-     * Prompts the user to set the monthly budget via console input.
+     * Imports expenses in bulk from a bank statement export.
      * <p>
-     * Validates that the input is a positive number. The method loops until a valid
-     * budget is entered. Once set, the budget is saved to the CSV file by calling {@link #saveBudget()}.
-     * Execution pauses after setting the budget to allow the user to view confirmation.
+     * Prompts the user for the file and its layout: the column mapping, the date formats,
+     * the delimiter, whether there is a header line and whether amounts use a decimal comma.
+     * Pressing Enter keeps the suggested default. Rows that already exist in the ledger
+     * (same date, amount and description) are skipped, and rows that cannot be parsed are
+     * reported with their line numbers.
      */
-    public void setMonthlyBudget()
+    public void importBankStatement()
     {
-        do
+        System.out.println("\n  Import Bank Statement");
+        System.out.println("==========================");
+
+        System.out.print("File to import: ");
+        String fileName = keyboard.nextLine().trim();
+        if (fileName.isEmpty())
         {
-            try
-            {
-                System.out.print("\nEnter monthly budget amount: ");
-                String input = keyboard.nextLine().trim();
-                monthlyBudget = Double.parseDouble(input);
-            }
-            catch (NumberFormatException ex)
+            System.out.println("\nImport was canceled.");
+            return;
+        }
+
+        System.out.print("Columns (" + ImportLayout.DEFAULT_COLUMNS + "): ");
+        String columns = keyboard.nextLine().trim();
+        if (columns.isEmpty())
+            columns = ImportLayout.DEFAULT_COLUMNS;
+
+        System.out.print("Date formats separated by | (" + ImportLayout.DEFAULT_DATE_FORMATS + "): ");
+        String dateFormats = keyboard.nextLine().trim();
+        if (dateFormats.isEmpty())
+            dateFormats = ImportLayout.DEFAULT_DATE_FORMATS;
+
+        System.out.print("Delimiter (,): ");
+        String delimiter = keyboard.nextLine();
+        char delimiterChar = delimiter.isEmpty() ? ',' : delimiter.charAt(0);
+        if (delimiter.equalsIgnoreCase("tab"))
+            delimiterChar = '\t';
+
+        System.out.print("Does the file have a header line? [Y/N]: ");
+        boolean hasHeader = keyboard.nextLine().trim().equalsIgnoreCase("y");
+
+        System.out.print("Do amounts use a decimal comma? [Y/N]: ");
+        boolean decimalComma = keyboard.nextLine().trim().equalsIgnoreCase("y");
+
+        System.out.print("Is spending written as negative amounts? [Y/N]: ");
+        boolean debitsNegative = keyboard.nextLine().trim().equalsIgnoreCase("y");
+
+        ImportLayout layout;
+        try
+        {
+            layout = new ImportLayout(columns, dateFormats, delimiterChar, hasHeader, decimalComma, debitsNegative,
+                    ImportLayout.DEFAULT_CATEGORY);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            System.out.println("\nInvalid layout: " + ex.getMessage());
+            return;
+        }
+
+        try
+        {
+            long start = System.nanoTime();
+            ImportResult result = new BankStatementImporter(this, importBatchSize).importFile(Path.of(fileName), layout);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.println("\nImport finished in " + millis + " ms");
+            System.out.println("==================================");
+            System.out.println("Rows read..........: " + result.getRowsRead());
+            System.out.println("Imported...........: " + result.getImported() + " (" + result.getBatches() + " batches)");
+            System.out.println("Duplicates skipped.: " + result.getDuplicates());
+            System.out.println("Rejected...........: " + result.getRejected().size());
+
+            int shown = Math.min(10, result.getRejected().size());
+            for (int i = 0; i < shown; i++)
             {
-                System.out.println("\nBudget must be a number. Please try again.");
+                System.out.println("  " + result.getRejected().get(i));
             }
+            if (result.getRejected().size() > shown)
+                System.out.println("  ... and " + (result.getRejected().size() - shown) + " more");
+        }
+        catch (IOException ex)
+        {
+            System.out.println("\nCannot read file: " + fileName);
         }
-        while (monthlyBudget <= 0);
-
-        System.out.println("\nMonthly budget was set to $" + monthlyBudget);
-        saveBudget();
 
         Pause();
     }
 
     /**
-     * Displays the current budget status for the user.
+     * Opens an archive ledger in off-heap mode and displays its summary.
      * <p>
-     * Prints the total budget, total spent, and the difference. If the total spent
-     * exceeds the budget, a warning message is displayed. Execution pauses after
-     * displaying the status for user readability.
+     * The user enters either an expense CSV file, which is loaded into off-heap memory,
+     * or a ledger file created earlier, which is memory-mapped. A CSV file can optionally be
+     * converted into a ledger file so later openings do not parse it again. The summary
+     * (totals, totals per category and per month of a chosen year) is computed directly
+     * over the off-heap rows, so the archive does not occupy the Java heap.
      */
-    public void viewBudgetStatus()
+    public void viewArchiveLedger()
     {
-        System.out.println("\n----------------------------");
-        System.out.println("Budget: " + monthlyBudget);
-        System.out.println("Total spent: " + totalSpent);
+        System.out.println("\n  Archive Ledger");
+        System.out.println("==========================");
 
-        if (totalSpent > monthlyBudget)
-            System.out.println("You are over budget by " + (totalSpent - monthlyBudget));
-        else
-            System.out.println("You have " + (monthlyBudget - totalSpent) + " remaining.");
+        System.out.print("Archive file (.csv to load, .ledger to open): ");
+        String fileName = keyboard.nextLine().trim();
+        if (fileName.isEmpty())
+        {
+            System.out.println("\nOpening was canceled.");
+            return;
+        }
 
-        System.out.println("----------------------------");
+        Path source = Path.of(fileName);
+        boolean isCsv = fileName.toLowerCase(Locale.ROOT).endsWith(".csv");
+        String target = "";
+        if (isCsv)
+        {
+            System.out.print("New ledger file to convert into (leave empty to keep it in memory only): ");
+            target = keyboard.nextLine().trim();
+        }
+
+        System.out.print("Year for the monthly breakdown (" + LocalDate.now().getYear() + "): ");
+        int year = LocalDate.now().getYear();
+        String yearInput = keyboard.nextLine().trim();
+        try
+        {
+            if (!yearInput.isEmpty())
+                year = Integer.parseInt(yearInput);
+        }
+        catch (NumberFormatException ex)
+        {
+            System.out.println("Invalid year. Using " + year + " instead.");
+        }
+
+        try (OffHeapLedger archive = !isCsv ? OffHeapLedger.open(source)
+                : target.isEmpty() ? OffHeapLedger.inMemory() : OffHeapLedger.create(Path.of(target)))
+        {
+            if (isCsv)
+            {
+                long skipped = archive.appendCsv(source);
+                if (skipped > 0)
+                    System.out.println("Skipped " + skipped + " invalid lines.");
+            }
+
+            System.out.println("\nArchive summary");
+            System.out.println("==================================");
+            System.out.println("Total expenses: " + archive.size());
+            System.out.println("Total amount: $" + archive.totalCents() / 100.0);
+
+            System.out.println("\nBy category");
+            System.out.println("----------------------------------");
+            long[] categoryCents = archive.categoryCents();
+            for (int i = 0; i < categoryCents.length; i++)
+            {
+                System.out.println(archive.getCategories().get(i) + ": $" + categoryCents[i] / 100.0);
+            }
+
+            System.out.println("\nBy month of " + year);
+            System.out.println("----------------------------------");
+            long[] monthCents = archive.monthlyCents(year);
+            for (int m = 0; m < 12; m++)
+            {
+                System.out.println(YearMonth.of(year, m + 1) + ": $" + monthCents[m] / 100.0);
+            }
+        }
+        catch (IOException ex)
+        {
+            System.out.println("\nCannot open archive: " + ex.getMessage());
+        }
 
         Pause();
     }
 
     /**
-     * Saves all expenses from memory to the task CSV file.
+     * Adds several expenses to the ledger at once.
      * <p>
-     * Each expense is serialized into a single CSV line using
-     * {Expense.AsCsvLine()}. Existing file contents are overwritten.
-     * If the file cannot be found or written, an error message is displayed.
+     * The expenses are committed as one step and appended to the expense file with a
+     * single write, instead of rewriting the whole file once per expense.
+     *
+     * @param batch the expenses to add
      */
-    public void saveExpenses()
+    public void addAll(List<Expense> batch)
     {
-        File file = new File(dirPath, expenseList);
+        if (batch.isEmpty())
+            return;
 
-        try(PrintWriter writer = new PrintWriter(new FileWriter(file, false)))
+        underLedgerLock(null, () ->
         {
-            for (Expense expense: expenses)
+            commitAll(batch);
+            writeAppended(batch);
+            return null;
+        });
+    }
+
+    /**
+     * Displays the merchants with the highest total spending.
+     * <p>
+     * Merchants are taken from the expense descriptions, ignoring case and extra whitespace.
+     * The totals come from the top merchants view, so no expenses are scanned. Archived
+     * years have no merchant totals, so when there are any, the merchants are counted
+     * over the archived and current expenses instead, and the result is cached.
+     */
+    public void viewTopMerchants()
+    {
+        int topCount = 10;
+        Map<String, Double> top = topMerchants.top(topCount);
+        if (!coldStore.isEmpty())
+        {
+            top = reportCache.get("merchants|" + topCount, ReportCache.Scope.all(), () ->
             {
-                writer.println(expense.AsCsvLine());
-            }
+                TopMerchantsView merchants = new TopMerchantsView();
+                merchants.rebuild(expensesBetween(LocalDate.MIN, LocalDate.MAX));
+                return merchants.top(topCount);
+            });
         }
-        catch (FileNotFoundException ex)
+
+        System.out.println("\nTop " + topCount + " Merchants");
+        System.out.println("==================================");
+
+        if (top.isEmpty())
         {
-            System.out.println("Cannot open expenses file. Not found.");
+            System.out.println("No expenses recorded.");
+            return;
         }
-        catch (IOException ex)
+
+        int i = 1;
+        for (Map.Entry<String, Double> entry: top.entrySet())
         {
-            System.out.println("IO Error in saving tasks data. Should never happen.");
-            ex.printStackTrace();
+            System.out.println((i++) + ". " + entry.getKey() + ": $" + entry.getValue());
         }
+
+        Pause();
     }
 
     /**
-     * Loads expenses from the expense CSV file into memory.
-     * Reads each line of the file and attempts to parse it into an {@link Expense}.
-     * Parsing includes safe handling of:
-     * <p>
-     *   ID
-     *   Description
-     *   Amount
-     *   Date
+     * Returns the total amount of the expenses dated in the current month, read from the
+     * monthly totals view, plus the recurring expenses that occurred this month up to today.
+     *
+     * @return the amount spent in the current month
+     */
+    public double getSpentThisMonth()
+    {
+        LocalDate today = LocalDate.now();
+        return monthlyTotals.getAmount(YearMonth.from(today)) + recurringAmount(today.withDayOfMonth(1), today, null);
+    }
+
+    /**
+     * Adds a new recurring expense rule.
      * <p>
-     * Invalid lines are skipped with a warning. After loading, the total number
-     * of expenses read is displayed.
+     * Prompts for the description, amount, category, first date, optional end date and
+     * the schedule: daily, weekly or monthly with an interval, or a cron-like pattern of
+     * day of month, month and day of week. Only the rule is saved; its occurrences are
+     * generated when reports need them.
      */
-    public void loadExpenses()
+    public void addRecurringExpense()
     {
-        File file = new File (dirPath, expenseList);
-        String line; // Variable for reading each line from the file
-        String[] parts;
-        int id;
-        String description;
-        double amount;
-        LocalDate date;
-        String category;
-        Expense newExpense; // Expense object to be created from each line
+        System.out.println("\n  Add Recurring Expense");
+        System.out.println("==========================");
+
+        System.out.print("Enter expense name: ");
+        String name = keyboard.nextLine().trim();
+        while (name.isEmpty())
+        {
+            System.out.println("Description cannot be empty.");
+            System.out.print("Enter again: ");
+            name = keyboard.nextLine().trim();
+        }
+
+        double amount = 0;
+        do
+        {
+            try
+            {
+                System.out.print("Enter amount: ");
+                amount = Double.parseDouble(keyboard.nextLine().trim());
+            }
+            catch (NumberFormatException ex)
+            {
+                System.out.println("Amount must be a number. Please try again.");
+            }
+        }
+        while (amount <= 0);
+
+        System.out.print("Enter expense category: ");
+        String category = keyboard.nextLine().trim();
+        while (category.isEmpty())
+        {
+            System.out.println("Category cannot be empty.");
+            System.out.print("Enter again: ");
+            category = keyboard.nextLine().trim();
+        }
+
+        System.out.print("First date (yyyy-mm-dd) or leave empty for today: ");
+        LocalDate startDate = readOptionalDate(LocalDate.now());
+
+        System.out.print("End date (yyyy-mm-dd) or leave empty for no end: ");
+        LocalDate endDate = readOptionalDate(null);
+        if (endDate != null && endDate.isBefore(startDate))
+        {
+            System.out.println("\nThe end date is before the first date. Rule was not added.");
+            return;
+        }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+        System.out.print("Frequency [D]aily, [W]eekly, [M]onthly or [C]ron: ");
+        String frequencyInput = keyboard.nextLine().trim().toUpperCase(Locale.ROOT);
+
+        RecurringExpense.Frequency frequency;
+        int interval = 1;
+        CronSpec cron = null;
+        try
         {
-            while ((line = reader.readLine()) != null)
+            switch (frequencyInput)
             {
-                parts = line.split(","); // separation of line data based on ","
-                if (parts.length < 5)
+                case "D" -> frequency = RecurringExpense.Frequency.DAILY;
+                case "W" -> frequency = RecurringExpense.Frequency.WEEKLY;
+                case "M" -> frequency = RecurringExpense.Frequency.MONTHLY;
+                case "C" -> frequency = RecurringExpense.Frequency.CRON;
+                default ->
                 {
-                    System.out.println("Skipping invalid line: " + line);
-                    continue;
+                    System.out.println("\nInvalid frequency. Rule was not added.");
+                    return;
                 }
+            }
 
-                id = Integer.parseInt(parts[0].trim());
-                description = parts[1].trim();
-                amount = Double.parseDouble(parts[2].trim());
-                date = LocalDate.parse(parts[3].trim());
-                category = parts[4].trim();
-
-                newExpense = new Expense(id, description, amount, date, category); // New expense creation
-                expenses.add(newExpense);
+            if (frequency == RecurringExpense.Frequency.CRON)
+            {
+                System.out.print("Pattern (day-of-month month day-of-week, e.g. \"1,15 * *\" or \"* * MON-FRI\"): ");
+                cron = new CronSpec(keyboard.nextLine());
+                if (!cron.canMatch())
+                {
+                    System.out.println("\nThe pattern never matches any day. Rule was not added.");
+                    return;
+                }
             }
+            else
+            {
+                System.out.print("Repeat every how many periods? (1): ");
+                String intervalInput = keyboard.nextLine().trim();
+                if (!intervalInput.isEmpty())
+                    interval = Integer.parseInt(intervalInput);
+            }
+
+            RecurringExpense rule = new RecurringExpense(name, amount, category, startDate, endDate,
+                    frequency, interval, cron);
+            recurring.add(rule);
+            reportCache.invalidateAll();
+            saveRecurring();
+            System.out.println("\nRecurring expense added successfully (" + rule.getId() + "): " + rule.describeSchedule());
         }
-        catch (FileNotFoundException ex)
+        catch (NumberFormatException ex)
         {
-            System.out.println("Cannot Open File: " + file.getAbsolutePath());
+            System.out.println("\nThe interval must be a number. Rule was not added.");
             return;
         }
-        catch (IOException ex)
+        catch (IllegalArgumentException ex)
         {
-            System.out.println("Error reading file: " + file.getAbsolutePath());
-            ex.printStackTrace();
-            //return;
+            System.out.println("\n" + ex.getMessage() + " Rule was not added.");
+            return;
         }
 
-        System.out.println("Data read successfully. Total expenses: " + expenses.size());
+        Pause();
     }
 
     /**
-     * Saves the current monthly budget to the CSV file defined by {@code budget}.
-     * <p>
-     * The method overwrites any existing value in the file with the current value
-     * of {@code monthlyBudget}. If the file cannot be opened or written, an
-     * appropriate message is displayed and the stack trace is printed for I/O errors.
+     * Displays all recurring expense rules and lets the user delete one of them.
      */
-    public void saveBudget()
+    public void viewRecurringExpenses()
     {
-        File file = new File(dirPath, budget);
+        System.out.println("\nYour recurring expenses: ");
+        System.out.println("=====================================================================");
 
-        try(PrintWriter writer = new PrintWriter(new FileWriter(file, false)))
+        if (recurring.isEmpty())
         {
-            writer.println(monthlyBudget);
+            System.out.println("No recurring expenses yet.");
+            Pause();
+            return;
         }
-        catch (FileNotFoundException ex)
+
+        List<RecurringExpense> rules = new ArrayList<>(recurring);
+        for (int i = 0; i < rules.size(); i++)
         {
-            System.out.println("Cannot open budget file. Not found.");
+            System.out.println();
+            System.out.println((i + 1) + ". " + rules.get(i));
         }
-        catch (IOException ex)
+
+        System.out.print("\nEnter the number of a rule to delete it (or press Enter to go back): ");
+        String input = keyboard.nextLine().trim();
+        if (input.isEmpty())
+            return;
+
+        try
         {
-            System.out.println("IO Error while saving budget data.");
-            ex.printStackTrace();
+            int choice = Integer.parseInt(input);
+            if (choice > 0 && choice <= rules.size())
+            {
+                recurring.remove(rules.get(choice - 1));
+                reportCache.invalidateAll();
+                saveRecurring();
+                System.out.println("\nRecurring expense deleted successfully!");
+            }
+            else
+                System.out.println("\nInvalid rule number.");
+        }
+        catch (NumberFormatException ex)
+        {
+            System.out.println("\nInvalid input. Please enter a valid number.");
+        }
+
+        Pause();
+    }
+
+    /**
+     * Displays the expenses dated between two user-selected dates, including the
+     * occurrences of recurring expenses, ordered by date, followed by their totals.
+     * Archived years that overlap the dates are decompressed for the listing, and the
+     * listing is cached until an expense in one of its months changes.
+     */
+    public void viewExpensesInDateRange()
+    {
+        System.out.print("\nFrom date (yyyy-mm-dd) or leave empty for the first day of this month: ");
+        LocalDate from = readOptionalDate(LocalDate.now().withDayOfMonth(1));
+        System.out.print("To date (yyyy-mm-dd) or leave empty for today: ");
+        LocalDate to = readOptionalDate(LocalDate.now());
+
+        ExpenseReport report = getDateRangeReport(from, to);
+
+        System.out.println("\nExpenses from " + from + " to " + to);
+        System.out.println("==================================");
+
+        for (Expense expense: report.getExpenses())
+        {
+            System.out.println(expense + (expense.getId() < 0 ? " (recurring)" : ""));
         }
+
+        if (report.getCount() == 0)
+            System.out.println("No expenses found in this period.");
+
+        System.out.println("\nTotal expenses: " + report.getCount());
+        System.out.println("Total amount: $" + report.getAmount());
+
+        Pause();
     }
 
     /**
-     * Loads the monthly budget from the CSV file defined by {@code budget}.
+     * Displays the rolling statistics of every category: the amounts spent in the last 7, 30
+     * and 90 days, and the time-decayed mean and standard deviation of its expenses.
      * <p>
-     * If the file exists, the first line is read and parsed to a double value,
-     * which is then assigned to {@code monthlyBudget}. If the file is missing,
-     * empty, or contains invalid data, the budget defaults to 0 and a message is displayed.
+     * The statistics are kept by the category statistics view, so no expenses are scanned.
+     * They cover the expenses of the current ledger, not the archived years.
      */
-    public void loadBudget()
+    public void viewCategoryStatistics()
     {
-        File file = new File (dirPath, budget);
-        String line; // Variable for reading each line from the file
+        List<CategoryStatsView.Snapshot> all = categoryStats.getAll();
+
+        System.out.println("\n  Category Statistics");
+        System.out.println("==================================");
 
-        if (file.exists())
+        if (all.isEmpty())
         {
-            try (BufferedReader reader = new BufferedReader(new FileReader(file)))
-            {
-                line = reader.readLine();
-                if (line != null && !line.isEmpty())
-                {
-                    monthlyBudget = Double.parseDouble(line);
-                }
-            }
-            catch (FileNotFoundException ex)
-            {
-                System.out.println("Budget file not found.");
-                return;
-            }
-            catch (IOException ex)
-            {
-                System.out.println("Error reading budget file.");
-                ex.printStackTrace();
-                //return;
-            }
-            catch (NumberFormatException ex)
+            System.out.println("No expenses recorded.");
+            Pause();
+            return;
+        }
+
+        for (CategoryStatsView.Snapshot stats: all)
+        {
+            System.out.println(stats.getCategory() + " (" + stats.getCount() + " expenses)");
+            for (int w = 0; w < CategoryStatsView.WINDOWS.length; w++)
             {
-                System.out.println("Invalid budget value in file. Using default 0.");
+                System.out.println(String.format(Locale.ROOT, "  Last %d days: $%.2f in %d expenses",
+                        CategoryStatsView.WINDOWS[w], stats.getWindowAmount(w), stats.getWindowCount(w)));
             }
+            System.out.println(String.format(Locale.ROOT, "  Usual expense: $%.2f (standard deviation $%.2f)",
+                    stats.getMean(), stats.getDeviation()));
         }
 
-        System.out.println("Data read successfully. Budget file found.");
+        Pause();
+    }
+
+    /**
+     * Displays ranking queries: the largest expenses, or the categories or descriptions
+     * with the highest total amount.
+     * <p>
+     * The user chooses the ranking, the number of results and optionally a date range and
+     * a category. Archived and recurring expenses that occur in the range are ranked too. The ranking is
+     * computed in one pass over the ledger with bounded heaps instead of sorting it, and
+     * cached until an expense in its date range and category changes.
+     */
+    public void viewRankings()
+    {
+        System.out.println("\n  Rankings");
+        System.out.println("==========================");
+        System.out.print("Rank [E]xpenses, [C]ategories or [D]escriptions: ");
+        String type = keyboard.nextLine().trim().toUpperCase(Locale.ROOT);
+        if (!type.equals("E") && !type.equals("C") && !type.equals("D"))
+        {
+            System.out.println("\nInvalid choice.");
+            return;
+        }
+
+        int n = 10;
+        System.out.print("How many results? (" + n + "): ");
+        String countInput = keyboard.nextLine().trim();
+        try
+        {
+            if (!countInput.isEmpty())
+                n = Integer.parseInt(countInput);
+        }
+        catch (NumberFormatException ex)
+        {
+            System.out.println("Invalid number. Showing " + n + " results.");
+        }
+
+        System.out.print("From date (yyyy-mm-dd) or leave empty for no limit: ");
+        LocalDate from = readOptionalDate(null);
+        System.out.print("To date (yyyy-mm-dd) or leave empty for no limit: ");
+        LocalDate to = readOptionalDate(null);
+
+        String category = "";
+        if (!type.equals("C"))
+        {
+            System.out.print("Category or leave empty for all: ");
+            category = keyboard.nextLine().trim();
+        }
+
+        LocalDate lo = from == null ? LocalDate.MIN : from;
+        LocalDate hi = to == null ? LocalDate.MAX : to;
+        String categoryFilter = category;
+        Predicate<Expense> filter = expense ->
+                !expense.getDateOfExpense().isBefore(lo) && !expense.getDateOfExpense().isAfter(hi)
+                && (categoryFilter.isEmpty() || expense.getCategory().equalsIgnoreCase(categoryFilter));
+
+        System.out.println("\nTop " + n + (type.equals("E") ? " expenses" : type.equals("C") ? " categories" : " descriptions")
+                + (from == null ? "" : " from " + from) + (to == null ? "" : " to " + to)
+                + (category.isEmpty() ? "" : " in category " + category));
+        System.out.println("==================================");
+
+        // without an end date the recurring occurrences end today, so the result changes with the date
+        String key = "ranking|" + type + "|" + n + "|" + lo + "|" + (to == null ? "open " + LocalDate.now() : hi)
+                + "|" + category.toLowerCase(Locale.ROOT);
+        ReportCache.Scope scope = ReportCache.Scope.months(from == null ? null : YearMonth.from(lo),
+                to == null ? null : YearMonth.from(hi)).inCategory(category);
+        int topCount = n;
+
+        int i = 1;
+        if (type.equals("E"))
+        {
+            List<Expense> top = reportCache.get(key, scope, () -> Rankings.topExpensesOf(rankingSources(lo, hi), topCount, filter));
+            for (Expense expense: top)
+            {
+                System.out.println((i++) + ". " + expense + (expense.getId() < 0 ? " (recurring)" : ""));
+            }
+            if (top.isEmpty())
+                System.out.println("No expenses found.");
+        }
+        else
+        {
+            List<Rankings.GroupTotal> top = reportCache.get(key, scope, () -> type.equals("C")
+                    ? Rankings.topCategoriesOf(rankingSources(lo, hi), topCount, filter)
+                    : Rankings.topDescriptionsOf(rankingSources(lo, hi), topCount, filter));
+            for (Rankings.GroupTotal total: top)
+            {
+                System.out.println((i++) + ". " + total.getName() + ": $" + total.getAmount()
+                        + " (" + total.getCount() + " expenses)");
+            }
+            if (top.isEmpty())
+                System.out.println("No expenses found.");
+        }
+
+        Pause();
+    }
+
+    /**
+     * Runs a query typed in the query language and displays the matching expenses or
+     * aggregates, followed by the plan that was used and the number of expenses examined.
+     * <p>
+     * A query that starts with {@code explain} only displays the plan. Invalid queries are
+     * rejected with a message that tells what was expected.
+     */
+    public void runQuery()
+    {
+        System.out.println("\n  Query");
+        System.out.println("==========================");
+        System.out.println("Example: sum where category in (Food, Transport) and amount > 50 and date in 2025-Q3");
+        System.out.println("         and name contains 'airport' by month order by amount desc limit 10");
+        System.out.println("Output:     list | count, sum, avg, min, max");
+        System.out.println("Conditions: category = x | category in (x, y) | amount > 50 | amount between 10 and 20");
+        System.out.println("            date >= 2025-01-01 | date between 2025-01-01 and 2025-03-31 | date in 2025, 2025-07 or 2025-Q3");
+        System.out.println("            name contains 'text' | name = 'text'");
+        System.out.print("\nQuery (prefix with explain to see the plan only): ");
+        String text = keyboard.nextLine().trim();
+
+        boolean explainOnly = text.toLowerCase(Locale.ROOT).startsWith("explain");
+        if (explainOnly)
+            text = text.substring("explain".length());
+
+        Query query;
+        try
+        {
+            query = Query.parse(text);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            System.out.println("\nInvalid query: " + ex.getMessage());
+            return;
+        }
+
+        if (explainOnly)
+        {
+            System.out.println("\n" + queryEngine.plan(query).explain());
+            Pause();
+            return;
+        }
+
+        QueryResult result = query(query);
+        System.out.println();
+        if (query.returnsRows())
+        {
+            double total = 0;
+            for (Expense expense: result.getRows())
+            {
+                System.out.println(expense + (expense.getId() < 0 ? " (recurring)" : ""));
+                total += expense.getAmount();
+            }
+            if (result.getRows().isEmpty())
+                System.out.println("No expenses found.");
+            System.out.println("\nShown: " + result.getRows().size() + " of " + result.getMatched()
+                    + " expenses, total amount: $" + Math.round(total * 100) / 100.0);
+        }
+        else
+        {
+            for (QueryResult.Group group: result.getGroups())
+            {
+                StringBuilder line = new StringBuilder(group.getName() + ":");
+                for (Query.Aggregate aggregate: query.getAggregates())
+                {
+                    double value = group.getValue(aggregate);
+                    line.append("  ").append(aggregate.name().toLowerCase(Locale.ROOT)).append(" ")
+                            .append(aggregate == Query.Aggregate.COUNT ? String.valueOf((long) value) : "$" + value);
+                }
+                System.out.println(line);
+            }
+            if (result.getGroups().isEmpty())
+                System.out.println("No expenses found.");
+        }
+
+        System.out.println("\n" + result.getPlan().explain());
+        System.out.println("Examined " + result.getExamined() + " expenses, " + result.getMatched() + " matched, in "
+                + String.format(Locale.ROOT, "%.1f", result.getElapsedNanos() / 1e6) + " ms");
+
+        Pause();
+    }
+
+    /**
+     * Runs a query over the ledger, the cold archives and the recurring expenses up to today.
+     *
+     * @param query the query to run
+     * @return the matching expenses or aggregates, with the plan and the number of expenses examined
+     */
+    public QueryResult query(Query query)
+    {
+        return queryEngine.execute(query);
+    }
+
+    /**
+     * Returns the number and total amount of all expenses, archived and recurring ones
+     * up to today included. The result is cached until an expense changes.
+     */
+    public ExpenseReport getSummary()
+    {
+        LocalDate today = LocalDate.now();
+        return reportCache.get("summary|" + today, ReportCache.Scope.all(), () -> new ExpenseReport(
+                ledgerTotals.getCount() + coldStore.getCount() + recurringCount(LocalDate.MIN, today, null),
+                ledgerTotals.getAmount() + coldStore.getAmount() + recurringAmount(LocalDate.MIN, today, null)));
+    }
+
+    /**
+     * Returns the number and total amount of the expenses of one month, recurring ones
+     * included. The result is cached until an expense of that month changes.
+     */
+    public ExpenseReport getMonthSummary(YearMonth month)
+    {
+        LocalDate first = month.atDay(1);
+        LocalDate last = month.atEndOfMonth();
+        return reportCache.get("month|" + month, ReportCache.Scope.months(month, month), () -> new ExpenseReport(
+                monthlyTotals.getCount(month) + coldStore.getCount(month) + recurringCount(first, last, null),
+                monthlyTotals.getAmount(month) + coldStore.getAmount(month) + recurringAmount(first, last, null)));
+    }
+
+    /**
+     * Returns the expenses of a category, ignoring case, with their totals: archived ones
+     * first, then the ones of the current ledger and the recurring ones up to today.
+     * The result is cached until an expense of that category changes.
+     */
+    public ExpenseReport getCategoryReport(String category)
+    {
+        LocalDate today = LocalDate.now();
+        String key = "category|" + category.toLowerCase(Locale.ROOT) + "|" + today;
+        return reportCache.get(key, ReportCache.Scope.all().inCategory(category), () ->
+        {
+            long count = categoryTotals.getCount(category) + coldStore.getCategoryCount(category)
+                    + recurringCount(LocalDate.MIN, today, category);
+            double amount = categoryTotals.getAmount(category) + coldStore.getCategoryAmount(category)
+                    + recurringAmount(LocalDate.MIN, today, category);
+
+            List<Expense> listed = new ArrayList<>();
+            if (count > 0)
+            {
+                try
+                {
+                    listed.addAll(coldStore.expensesInCategory(category));
+                }
+                catch (IOException ex)
+                {
+                    System.out.println("Cannot read the cold archives: " + ex.getMessage());
+                }
+                listed.addAll(expenseIndex.inCategory(category));
+                for (RecurringExpense rule: recurring)
+                {
+                    if (rule.getCategory().equalsIgnoreCase(category))
+                        listed.addAll(rule.occurrencesBetween(rule.getStartDate(), today));
+                }
+            }
+            return new ExpenseReport(listed, count, amount);
+        });
+    }
+
+    /**
+     * Returns the expenses dated between two dates, recurring ones included, ordered by
+     * date. The result is cached until an expense of one of those months changes.
+     */
+    public ExpenseReport getDateRangeReport(LocalDate from, LocalDate to)
+    {
+        ReportCache.Scope scope = ReportCache.Scope.months(YearMonth.from(from), YearMonth.from(to));
+        return reportCache.get("range|" + from + "|" + to, scope, () ->
+        {
+            List<Expense> result = expensesBetween(from, to);
+            for (RecurringExpense rule: recurring)
+            {
+                result.addAll(rule.occurrencesBetween(from, to));
+            }
+            result.sort(Comparator.comparing(Expense::getDateOfExpense));
+            return new ExpenseReport(result);
+        });
+    }
+
+    /**
+     * Returns the cache of report results, for its hit and miss statistics.
+     */
+    public ReportCache getReportCache() {
+        return reportCache;
+    }
+
+    /**
+     * Returns the stored expenses dated between two dates, inclusive: the archived ones of
+     * the years that overlap the range, followed by the ones of the current ledger, read
+     * from the date index.
+     * If an archive cannot be read, an error message is displayed and its expenses are left out.
+     *
+     * @param from the first date
+     * @param to   the last date
+     * @return a new list that the caller may change
+     */
+    public List<Expense> expensesBetween(LocalDate from, LocalDate to)
+    {
+        List<Expense> result = new ArrayList<>();
+        try
+        {
+            result.addAll(coldStore.expensesBetween(from, to));
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Cannot read the cold archives: " + ex.getMessage());
+        }
+
+        result.addAll(expenseIndex.between(from, to));
+        return result;
+    }
+
+    /**
+     * Moves the expenses of closed years from the ledger into the cold archives, so that only
+     * the current year is kept in memory and in the expense file. Runs at startup; expenses
+     * added later for a closed year stay in the ledger until the next start.
+     */
+    private void archiveClosedYears()
+    {
+        int currentYear = LocalDate.now().getYear();
+        List<Expense> closed = new ArrayList<>();
+        PersistentVector<Expense> hot = PersistentVector.empty();
+        for (Expense expense: expenses)
+        {
+            if (expense.getDateOfExpense().getYear() < currentYear)
+                closed.add(expense);
+            else
+                hot = hot.plus(expense);
+        }
+
+        if (closed.isEmpty())
+            return;
+
+        // the archives are written before the expense file, so a crash in between only archives the rows again
+        try
+        {
+            coldStore.archive(closed);
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Cannot archive closed years: " + ex.getMessage());
+            return;
+        }
+
+        setLedger(hot);
+        if (saveExpenses())
+            System.out.println("Archived " + closed.size() + " expenses of closed years. Expenses of this year: " + hot.size());
+        else
+            System.out.println("Archived " + closed.size() + " expenses of closed years, but they stay in the expense file until the next start.");
+    }
+
+    /**
+     * Returns the lists of expenses to rank for a date range, which are ranked separately
+     * and merged. Stored expenses are ranked straight from the snapshot when the range is
+     * open, and from the date index otherwise. Archived expenses and recurring occurrences
+     * are added only when they exist. Recurring rules have no last occurrence, so without an
+     * end date their occurrences are taken up to today.
+     */
+    private List<List<Expense>> rankingSources(LocalDate from, LocalDate to)
+    {
+        List<List<Expense>> sources = new ArrayList<>();
+        sources.add(from.equals(LocalDate.MIN) && to.equals(LocalDate.MAX) ? snapshot() : expenseIndex.between(from, to));
+
+        if (!coldStore.isEmpty())
+        {
+            try
+            {
+                sources.add(coldStore.expensesBetween(from, to));
+            }
+            catch (IOException ex)
+            {
+                System.out.println("Cannot read the cold archives: " + ex.getMessage());
+            }
+        }
+
+        List<Expense> occurrences = new ArrayList<>();
+        for (RecurringExpense rule: recurring)
+        {
+            occurrences.addAll(rule.occurrencesBetween(from, to.equals(LocalDate.MAX) ? LocalDate.now() : to));
+        }
+        if (!occurrences.isEmpty())
+            sources.add(occurrences);
+        return sources;
+    }
+
+    /**
+     * Reads a date from the keyboard. An empty line or an invalid date returns the default value.
+     */
+    private LocalDate readOptionalDate(LocalDate defaultValue)
+    {
+        String input = keyboard.nextLine().trim();
+        if (input.isEmpty())
+            return defaultValue;
+
+        try
+        {
+            return LocalDate.parse(input);
+        }
+        catch (DateTimeParseException ex)
+        {
+            System.out.println("Invalid date format. Using " + (defaultValue == null ? "no date" : defaultValue) + " instead.");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Counts the occurrences of the recurring expenses between two dates.
+     *
+     * @param category only rules of this category are counted, or all rules if null
+     */
+    private long recurringCount(LocalDate from, LocalDate to, String category)
+    {
+        long count = 0;
+        for (RecurringExpense rule: recurring)
+        {
+            if (category == null || rule.getCategory().equalsIgnoreCase(category))
+                count += rule.countBetween(from, to);
+        }
+        return count;
+    }
+
+    /**
+     * Sums the occurrences of the recurring expenses between two dates.
+     *
+     * @param category only rules of this category are summed, or all rules if null
+     */
+    private double recurringAmount(LocalDate from, LocalDate to, String category)
+    {
+        double amount = 0;
+        for (RecurringExpense rule: recurring)
+        {
+            if (category == null || rule.getCategory().equalsIgnoreCase(category))
+                amount += rule.amountBetween(from, to);
+        }
+        return amount;
+    }
+
+    /**
+     * Prompts the user to set the monthly budget via console input.
+     * <p>
+     * Validates that the input is a positive number. The method loops until a valid
+     * budget is entered. Once set, the budget is saved to the CSV file by calling {@link #saveBudget()}.
+     * Execution pauses after setting the budget to allow the user to view confirmation.
+     */
+    public void setMonthlyBudget()
+    {
+        do
+        {
+            try
+            {
+                System.out.print("\nEnter monthly budget amount: ");
+                String input = keyboard.nextLine().trim();
+                monthlyBudget = Double.parseDouble(input);
+            }
+            catch (NumberFormatException ex)
+            {
+                System.out.println("\nBudget must be a number. Please try again.");
+            }
+        }
+        while (monthlyBudget <= 0);
+
+        System.out.println("\nMonthly budget was set to $" + monthlyBudget);
+        saveBudget();
+
+        Pause();
+    }
+
+    /**
+     * Displays the current budget status for the user.
+     * <p>
+     * Prints the total budget, total spent in the current month, and the difference.
+     * If the total spent exceeds the budget, a warning message is displayed.
+     * Execution pauses after displaying the status for user readability.
+     */
+    public void viewBudgetStatus()
+    {
+        double totalSpent = getSpentThisMonth();
+
+        System.out.println("\n----------------------------");
+        System.out.println("Budget: " + monthlyBudget);
+        System.out.println("Total spent: " + totalSpent);
+
+        if (totalSpent > monthlyBudget)
+            System.out.println("You are over budget by " + (totalSpent - monthlyBudget));
+        else
+            System.out.println("You have " + (monthlyBudget - totalSpent) + " remaining.");
+
+        System.out.println("----------------------------");
+
+        Pause();
+    }
+
+    /**
+     * Saves all expenses from memory to the expense repository.
+     * <p>
+     * The stored expenses are replaced with the current ledger, so the repository
+     * always holds one complete version. Concurrent saves are serialized, and changes
+     * made by other processes and programs are applied first, so they are not
+     * overwritten. If the expenses cannot be written, an error message is displayed.
+     *
+     * @return true if the stored expenses were replaced
+     */
+    public boolean saveExpenses()
+    {
+        return underLedgerLock(false, () ->
+        {
+            rewriteExpenseFile();
+            return true;
+        });
+    }
+
+    /**
+     * Replaces the stored expenses with the ledger and increases the ledger generation, so
+     * other processes reload them. If the expenses cannot be replaced, the generation is
+     * left unchanged. Must be called while holding saveLock and the ledger lock.
+     *
+     * @throws IOException if the expenses or the generation cannot be written
+     */
+    private void rewriteExpenseFile() throws IOException
+    {
+        repository.replaceAll(expenses);
+        knownGeneration = ledgerVersion.increment();
+    }
+
+    /**
+     * Appends the given expenses to the expense repository.
+     * <p>
+     * All expenses are written with one write, leaving the stored expenses untouched.
+     * Changes made by other processes and programs are applied first.
+     *
+     * @param batch the expenses to append
+     */
+    public void appendExpenses(List<Expense> batch)
+    {
+        underLedgerLock(null, () ->
+        {
+            writeAppended(batch);
+            return null;
+        });
+    }
+
+    // Must be called while holding saveLock and the ledger lock
+    private void writeAppended(List<Expense> batch)
+    {
+        try
+        {
+            repository.append(batch);
+        }
+        catch (IOException ex)
+        {
+            System.out.println("IO Error while appending expenses: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Adds several expenses to the ledger as one step and publishes the new ledger version.
+     *
+     * @param batch the expenses to add
+     */
+    private void commitAll(List<Expense> batch)
+    {
+        if (batch.isEmpty())
+            return;
+
+        synchronized (writeLock)
+        {
+            PersistentVector<Expense> current = expenses;
+            for (Expense expense: batch)
+            {
+                positions.putIfAbsent(expense.getId(), current.size());
+                current = current.plus(expense);
+            }
+            expenses = current;
+
+            for (Expense expense: batch)
+            {
+                eventBus.publish(ExpenseEvent.added(expense));
+            }
+        }
+    }
+
+    /**
+     * Applies changes read from the repository to the ledger and publishes them. A put
+     * adds the expense or replaces the one with its ID; a put that changes nothing and a
+     * delete of an unknown ID are ignored.
+     *
+     * @param changes the changes in the order they were stored
+     * @return the number of changes that changed the ledger
+     */
+    private int commitStored(List<StoredChange> changes)
+    {
+        if (changes.isEmpty())
+            return 0;
+
+        synchronized (writeLock)
+        {
+            PersistentVector<Expense> current = expenses;
+            List<ExpenseEvent> events = new ArrayList<>();
+            for (StoredChange change: changes)
+            {
+                Integer index = positions.get(change.getId());
+                Expense old = index == null ? null : current.get(index);
+                if (change.isDelete())
+                {
+                    if (old == null)
+                        continue;
+                    current = remove(current, index);
+                    events.add(ExpenseEvent.deleted(old));
+                }
+                else if (old == null)
+                {
+                    positions.put(change.getId(), current.size());
+                    current = current.plus(change.getExpense());
+                    events.add(ExpenseEvent.added(change.getExpense()));
+                }
+                else if (!sameValues(old, change.getExpense()))
+                {
+                    current = current.with(index, change.getExpense());
+                    events.add(ExpenseEvent.updated(old, change.getExpense()));
+                }
+            }
+            expenses = current;
+
+            for (ExpenseEvent event: events)
+            {
+                eventBus.publish(event);
+            }
+            return events.size();
+        }
+    }
+
+    /**
+     * Appends an expense to the ledger and publishes the new ledger version.
+     *
+     * @param expense the expense to add
+     */
+    private void commitAdd(Expense expense)
+    {
+        synchronized (writeLock)
+        {
+            positions.putIfAbsent(expense.getId(), expenses.size());
+            expenses = expenses.plus(expense);
+            eventBus.publish(ExpenseEvent.added(expense));
+        }
+    }
+
+    /**
+     * Replaces an expense with its edited copy and publishes the new ledger version.
+     * The update only succeeds if the ledger still holds exactly the expense that was edited.
+     *
+     * @param before the expense as it was read before editing
+     * @param after  the edited copy
+     * @return true if the update was applied, false if the expense was changed or deleted meanwhile
+     */
+    private boolean commitUpdate(Expense before, Expense after)
+    {
+        synchronized (writeLock)
+        {
+            PersistentVector<Expense> current = expenses;
+            Integer index = positions.get(before.getId());
+            if (index == null || current.get(index) != before)
+                return false;
+
+            expenses = current.with(index, after);
+            eventBus.publish(ExpenseEvent.updated(before, after));
+            return true;
+        }
+    }
+
+    /**
+     * Removes the expense with the given ID and publishes the new ledger version.
+     *
+     * @param id the ID of the expense to delete
+     * @return the deleted expense, or null if no expense has this ID
+     */
+    private Expense commitDelete(int id)
+    {
+        synchronized (writeLock)
+        {
+            PersistentVector<Expense> current = expenses;
+            Integer index = positions.get(id);
+            if (index == null)
+                return null;
+
+            Expense removed = current.get(index);
+            expenses = remove(current, index);
+            eventBus.publish(ExpenseEvent.deleted(removed));
+            return removed;
+        }
+    }
+
+    /**
+     * Removes the expense at the given index from a ledger version and updates the
+     * position of the expense that took its place. Must be called holding writeLock.
+     */
+    private PersistentVector<Expense> remove(PersistentVector<Expense> ledger, int index)
+    {
+        int last = ledger.size() - 1;
+        positions.remove(ledger.get(index).getId());
+        if (index < last)
+            positions.replace(ledger.get(last).getId(), last, index);
+        return ledger.minus(index);
+    }
+
+    /**
+     * Publishes a ledger version that was built from scratch and indexes the positions of
+     * its expenses. Where IDs repeat, the first expense with the ID is the one edited.
+     */
+    private void setLedger(PersistentVector<Expense> ledger)
+    {
+        synchronized (writeLock)
+        {
+            positions.clear();
+            for (int i = 0; i < ledger.size(); i++)
+            {
+                positions.putIfAbsent(ledger.get(i).getId(), i);
+            }
+            expenses = ledger;
+        }
+    }
+
+    /**
+     * Loads the expenses from the expense repository into memory.
+     * Invalid stored expenses are skipped with a warning. After loading, the total number
+     * of expenses read is displayed.
+     */
+    public void loadExpenses()
+    {
+        try
+        {
+            setLedger(readRepository());
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error reading the stored expenses: " + ex.getMessage());
+            ex.printStackTrace();
+            return;
+        }
+
+        System.out.println("Data read successfully. Total expenses: " + expenses.size());
+    }
+
+    /**
+     * Reads all stored expenses into a new ledger version.
+     *
+     * @return the stored expenses, in storage order
+     * @throws IOException if the expenses cannot be read
+     */
+    private PersistentVector<Expense> readRepository() throws IOException
+    {
+        PersistentVector<Expense> loaded = PersistentVector.empty();
+        try (Stream<Expense> stored = repository.loadAll())
+        {
+            Iterator<Expense> rows = stored.iterator();
+            while (rows.hasNext())
+            {
+                loaded = loaded.plus(rows.next());
+            }
+        }
+        catch (UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+        return loaded;
+    }
+
+    /**
+     * Saves the current monthly budget to the expense repository.
+     * <p>
+     * Any stored value is overwritten with the current value of {@code monthlyBudget}.
+     * If the budget cannot be written, an appropriate message is displayed.
+     */
+    public void saveBudget()
+    {
+        synchronized (saveLock)
+        {
+            try
+            {
+                repository.saveBudget(monthlyBudget);
+            }
+            catch (IOException ex)
+            {
+                System.out.println("IO Error while saving budget data.");
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Loads the monthly budget from the expense repository.
+     * <p>
+     * If a budget is stored, it is assigned to {@code monthlyBudget}. If none is stored
+     * or it cannot be read, the budget defaults to 0 and a message is displayed.
+     */
+    public void loadBudget()
+    {
+        synchronized (saveLock)
+        {
+            try
+            {
+                repository.loadBudget().ifPresent(value -> monthlyBudget = value);
+            }
+            catch (IOException ex)
+            {
+                System.out.println("Error reading budget data.");
+                ex.printStackTrace();
+            }
+        }
+
+        System.out.println("Data read successfully. Budget file found.");
+    }
+
+    /**
+     * Saves all recurring expense rules to the recurring CSV file.
+     * <p>
+     * Each rule is serialized into a single CSV line using {RecurringExpense.AsCsvLine()}.
+     * Existing file contents are overwritten.
+     */
+    public void saveRecurring()
+    {
+        File file = new File(dirPath, recurringList);
+
+        try(PrintWriter writer = new PrintWriter(new FileWriter(file, false)))
+        {
+            for (RecurringExpense rule: recurring)
+            {
+                writer.println(rule.AsCsvLine());
+            }
+        }
+        catch (IOException ex)
+        {
+            System.out.println("IO Error while saving recurring expenses.");
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Loads the recurring expense rules from the recurring CSV file.
+     * <p>
+     * Lines that cannot be parsed are skipped with a warning.
+     */
+    public void loadRecurring()
+    {
+        File file = new File(dirPath, recurringList);
+
+        // read like the expense file, so quoted names and categories may hold commas and line breaks
+        try (CsvRecordReader records = new CsvRecordReader(new FileReader(file), ','))
+        {
+            records.expectFields(RecurringExpense.FIELDS, RecurringExpense.FIELDS);
+            while (records.next())
+            {
+                if (records.isBlank() && records.getError() == null)
+                    continue;
+
+                List<String> parts = records.fields();
+                if (records.getError() != null || parts.size() < RecurringExpense.FIELDS)
+                {
+                    System.out.println("Skipping invalid recurring line: " + records.getRaw());
+                    continue;
+                }
+
+                try
+                {
+                    String end = parts.get(5).trim();
+                    String cron = parts.get(8).trim();
+                    recurring.add(new RecurringExpense(
+                            Integer.parseInt(parts.get(0).trim()),
+                            parts.get(1).trim(),
+                            Double.parseDouble(parts.get(2).trim()),
+                            parts.get(3).trim(),
+                            LocalDate.parse(parts.get(4).trim()),
+                            end.isEmpty() ? null : LocalDate.parse(end),
+                            RecurringExpense.Frequency.valueOf(parts.get(6).trim()),
+                            Integer.parseInt(parts.get(7).trim()),
+                            cron.isEmpty() ? null : new CronSpec(cron)));
+                }
+                catch (IllegalArgumentException | DateTimeParseException ex)
+                {
+                    System.out.println("Skipping invalid recurring line: " + records.getRaw());
+                }
+            }
+        }
+        catch (FileNotFoundException ex)
+        {
+            System.out.println("Cannot Open File: " + file.getAbsolutePath());
+            return;
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error reading file: " + file.getAbsolutePath());
+            ex.printStackTrace();
+        }
+
+        System.out.println("Data read successfully. Total recurring expenses: " + recurring.size());
     }
 
     /**
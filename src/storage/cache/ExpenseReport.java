@@ -0,0 +1,65 @@
+package storage.cache;
+
+import model.Expense;
+
+import java.util.List;
+
+/**
+ * The result of a report: the number and total amount of the matching expenses and,
+ * for listings, the expenses themselves. Reports are shared through the
+ * {@link ReportCache}, so they cannot be changed.
+ */
+public class ExpenseReport
+{
+    private final List<Expense> expenses;
+    private final long count;
+    private final double amount;
+
+    /**
+     * Creates a report with totals only.
+     */
+    public ExpenseReport(long count, double amount)
+    {
+        this.expenses = List.of();
+        this.count = count;
+        this.amount = amount;
+    }
+
+    /**
+     * Creates a report that lists the given expenses with totals computed elsewhere,
+     * such as from the materialized views.
+     */
+    public ExpenseReport(List<Expense> expenses, long count, double amount)
+    {
+        this.expenses = List.copyOf(expenses);
+        this.count = count;
+        this.amount = amount;
+    }
+
+    /**
+     * Creates a report that lists the given expenses and sums them.
+     */
+    public ExpenseReport(List<Expense> expenses)
+    {
+        double total = 0;
+        for (Expense expense: expenses)
+        {
+            total += expense.getAmount();
+        }
+        this.expenses = List.copyOf(expenses);
+        this.count = expenses.size();
+        this.amount = total;
+    }
+
+    public List<Expense> getExpenses() {
+        return expenses;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,260 @@
+package storage.cache;
+
+import model.Expense;
+import storage.events.ExpenseEvent;
+import storage.events.ExpenseListener;
+
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A size-bounded cache of report results, invalidated by ledger versions.
+ * <p>
+ * Every change event increases the ledger version and records it as the last change of the
+ * months and categories of the changed expense. A cached result keeps the version it was
+ * computed at and the {@link Scope} of expenses it depends on, and is only reused while no
+ * change has touched an expense of that scope since. A new expense in November therefore
+ * leaves the March figures in the cache.
+ * <p>
+ * The cache must be registered as a synchronous listener, so the version is increased
+ * before the writer returns. When the cache is full, the least recently used result is
+ * evicted.
+ */
+public class ReportCache implements ExpenseListener
+{
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long version;
+    private long lastChange;
+    private long lastInvalidateAll;
+    private final Map<YearMonth, Long> monthChanges = new HashMap<>();
+    private final Map<String, Long> categoryChanges = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public ReportCache(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                if (size() <= ReportCache.this.maxEntries)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for the key, or computes and caches it if there is no
+     * result that is still valid. The result is computed without holding the cache lock.
+     *
+     * @param key     identifies the report and all of its parameters
+     * @param scope   the expenses the result depends on
+     * @param compute computes the result from the current ledger
+     * @param <T>     the result type; results are shared, so they should not be changed
+     * @return the cached or newly computed result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Scope scope, Supplier<T> compute)
+    {
+        long computedAt;
+        synchronized (this)
+        {
+            Entry entry = entries.get(key);
+            if (entry != null)
+            {
+                if (isValid(entry))
+                {
+                    hits++;
+                    return (T) entry.value;
+                }
+                entries.remove(key);
+                invalidations++;
+            }
+            misses++;
+            computedAt = version; // taken before computing, so a concurrent change makes the result stale
+        }
+
+        T value = compute.get();
+        synchronized (this)
+        {
+            entries.put(key, new Entry(value, scope, computedAt));
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized void onEvent(ExpenseEvent event)
+    {
+        version++;
+        lastChange = version;
+        if (event.getBefore() != null)
+            recordChange(event.getBefore());
+        if (event.getAfter() != null)
+            recordChange(event.getAfter());
+    }
+
+    /**
+     * Marks every cached result as stale, for changes that are not ledger events,
+     * such as added or deleted recurring expenses.
+     */
+    public synchronized void invalidateAll()
+    {
+        version++;
+        lastChange = version;
+        lastInvalidateAll = version;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        long requests = hits + misses;
+        return "Report cache: " + entries.size() + "/" + maxEntries + " results, "
+                + hits + " hits, " + misses + " misses"
+                + (requests == 0 ? "" : " (" + Math.round(100.0 * hits / requests) + "% hit rate)")
+                + ", " + invalidations + " invalidated, " + evictions + " evicted, ledger version " + version;
+    }
+
+    private void recordChange(Expense expense)
+    {
+        monthChanges.put(YearMonth.from(expense.getDateOfExpense()), version);
+        categoryChanges.put(expense.getCategory().toLowerCase(Locale.ROOT), version);
+    }
+
+    /**
+     * A result is stale if a change touched both a month and the category of its scope.
+     * Months and categories are tracked separately, so a change may be counted against a
+     * result that did not really depend on it, but never the other way around.
+     */
+    private boolean isValid(Entry entry)
+    {
+        long since = entry.computedAt;
+        if (lastInvalidateAll > since)
+            return false;
+        if (lastChange <= since)
+            return true;
+
+        Scope scope = entry.scope;
+        boolean monthChanged = false;
+        if (scope.from == null && scope.to == null)
+            monthChanged = true;
+        else
+        {
+            for (Map.Entry<YearMonth, Long> change: monthChanges.entrySet())
+            {
+                if (change.getValue() > since && scope.containsMonth(change.getKey()))
+                {
+                    monthChanged = true;
+                    break;
+                }
+            }
+        }
+
+        if (!monthChanged)
+            return true;
+        if (scope.category == null)
+            return false;
+
+        Long categoryChange = categoryChanges.get(scope.category);
+        return categoryChange == null || categoryChange <= since;
+    }
+
+    /**
+     * The expenses a cached result depends on: a range of months, open on either side,
+     * and optionally a single category.
+     */
+    public static class Scope
+    {
+        private final YearMonth from;
+        private final YearMonth to;
+        private final String category;
+
+        private Scope(YearMonth from, YearMonth to, String category)
+        {
+            this.from = from;
+            this.to = to;
+            this.category = category == null ? null : category.toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Depends on every expense.
+         */
+        public static Scope all()
+        {
+            return new Scope(null, null, null);
+        }
+
+        /**
+         * Depends on the expenses dated in the given months, inclusive.
+         * A null month leaves that side of the range open.
+         */
+        public static Scope months(YearMonth from, YearMonth to)
+        {
+            return new Scope(from, to, null);
+        }
+
+        /**
+         * Narrows the scope to the expenses of one category, ignoring case.
+         * A null or empty category keeps every category.
+         */
+        public Scope inCategory(String category)
+        {
+            return new Scope(from, to, category == null || category.isEmpty() ? null : category);
+        }
+
+        boolean containsMonth(YearMonth month)
+        {
+            return (from == null || !month.isBefore(from)) && (to == null || !month.isAfter(to));
+        }
+    }
+
+    private static class Entry
+    {
+        final Object value;
+        final Scope scope;
+        final long computedAt;
+
+        Entry(Object value, Scope scope, long computedAt)
+        {
+            this.value = value;
+            this.scope = scope;
+            this.computedAt = computedAt;
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package storage.cold;
+
+import model.Expense;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The immutable archive of the expenses of one closed year.
+ * <p>
+ * The file starts with an uncompressed header that holds the totals of the year per month
+ * and per category, so summaries are answered from the header alone:
+ * <pre>
+ *   int   magic, int version, int year, int rows, int highest id
+ *   12 x  (int count, long cents)                  one entry per month
+ *   int   categories
+ *   n  x  (int length, UTF-8 name, int count, long cents)   one entry per category
+ *   int   compressed length, int raw length
+ * </pre>
+ * It is followed by the rows, sorted by date and compressed with {@link Deflater}. The rows
+ * are stored column by column: day deltas from the previous row, id deltas, amounts in
+ * cents, category numbers into the header table and the descriptions. Numbers are written
+ * as variable-length integers, so most dates take one byte and most amounts two or three.
+ * <p>
+ * The rows are only decompressed when {@link #expenses()} is called. They are then kept
+ * behind a soft reference, so repeated listings do not decompress them again while the
+ * memory is not needed elsewhere.
+ */
+public class ColdArchive
+{
+    private static final int MAGIC = 0x434F4C44; // "COLD"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final int year;
+    private final int rows;
+    private final int highestId;
+    private final int[] monthCounts = new int[12];
+    private final long[] monthCents = new long[12];
+    private final List<String> categories = new ArrayList<>();
+    private final List<Integer> categoryCounts = new ArrayList<>();
+    private final List<Long> categoryCents = new ArrayList<>();
+    private final long payloadOffset;
+    private final int compressedLength;
+    private final int rawLength;
+    private SoftReference<List<Expense>> cached = new SoftReference<>(null);
+
+    private ColdArchive(Path file) throws IOException
+    {
+        this.file = file;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not a cold archive: " + file);
+
+            year = in.readInt();
+            rows = in.readInt();
+            highestId = in.readInt();
+            long headerBytes = 20;
+
+            for (int m = 0; m < 12; m++)
+            {
+                monthCounts[m] = in.readInt();
+                monthCents[m] = in.readLong();
+            }
+            headerBytes += 12 * 12;
+
+            int categoryCount = in.readInt();
+            headerBytes += 4;
+            for (int i = 0; i < categoryCount; i++)
+            {
+                byte[] name = new byte[in.readInt()];
+                in.readFully(name);
+                categories.add(new String(name, StandardCharsets.UTF_8));
+                categoryCounts.add(in.readInt());
+                categoryCents.add(in.readLong());
+                headerBytes += 4 + name.length + 12;
+            }
+
+            compressedLength = in.readInt();
+            rawLength = in.readInt();
+            payloadOffset = headerBytes + 8;
+        }
+    }
+
+    /**
+     * Opens an archive file, reading only its header.
+     *
+     * @throws IOException if the file cannot be read or is not a cold archive
+     */
+    public static ColdArchive open(Path file) throws IOException
+    {
+        return new ColdArchive(file);
+    }
+
+    /**
+     * Writes the expenses of one year into a new archive file and opens it.
+     * The file is written next to the target first and then moved into place,
+     * so an existing archive is replaced as a whole or not at all.
+     *
+     * @param file     the archive file to write
+     * @param year     the year of the expenses
+     * @param expenses the expenses; all must be dated in the given year
+     * @throws IOException if the file cannot be written
+     */
+    public static ColdArchive write(Path file, int year, List<Expense> expenses) throws IOException
+    {
+        List<Expense> sorted = new ArrayList<>(expenses);
+        sorted.sort(Comparator.comparing(Expense::getDateOfExpense).thenComparingInt(Expense::getId));
+
+        int[] monthCounts = new int[12];
+        long[] monthCents = new long[12];
+        Map<String, Integer> categoryIndex = new LinkedHashMap<>();
+        List<int[]> categoryCounts = new ArrayList<>();
+        List<long[]> categoryCents = new ArrayList<>();
+        int highestId = 0;
+
+        for (Expense expense: sorted)
+        {
+            if (expense.getDateOfExpense().getYear() != year)
+                throw new IllegalArgumentException("Expense " + expense.getId() + " is not dated in " + year);
+
+            long cents = toCents(expense.getAmount());
+            int month = expense.getDateOfExpense().getMonthValue() - 1;
+            monthCounts[month]++;
+            monthCents[month] += cents;
+
+            Integer index = categoryIndex.get(expense.getCategory());
+            if (index == null)
+            {
+                index = categoryIndex.size();
+                categoryIndex.put(expense.getCategory(), index);
+                categoryCounts.add(new int[1]);
+                categoryCents.add(new long[1]);
+            }
+            categoryCounts.get(index)[0]++;
+            categoryCents.get(index)[0] += cents;
+            highestId = Math.max(highestId, expense.getId());
+        }
+
+        // === Columns ===
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        long previousDay = LocalDate.of(year, 1, 1).toEpochDay();
+        for (Expense expense: sorted)
+        {
+            long day = expense.getDateOfExpense().toEpochDay();
+            writeVarLong(raw, day - previousDay);
+            previousDay = day;
+        }
+        long previousId = 0;
+        for (Expense expense: sorted)
+        {
+            writeVarLong(raw, zigZag(expense.getId() - previousId));
+            previousId = expense.getId();
+        }
+        for (Expense expense: sorted)
+        {
+            writeVarLong(raw, zigZag(toCents(expense.getAmount())));
+        }
+        for (Expense expense: sorted)
+        {
+            writeVarLong(raw, categoryIndex.get(expense.getCategory()));
+        }
+        for (Expense expense: sorted)
+        {
+            byte[] name = expense.getName().getBytes(StandardCharsets.UTF_8);
+            writeVarLong(raw, name.length);
+            raw.write(name, 0, name.length);
+        }
+
+        byte[] rawBytes = raw.toByteArray();
+        byte[] compressed = deflate(rawBytes);
+
+        // === Header and payload ===
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(year);
+            out.writeInt(sorted.size());
+            out.writeInt(highestId);
+            for (int m = 0; m < 12; m++)
+            {
+                out.writeInt(monthCounts[m]);
+                out.writeLong(monthCents[m]);
+            }
+            out.writeInt(categoryIndex.size());
+            int i = 0;
+            for (String category: categoryIndex.keySet())
+            {
+                byte[] name = category.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+                out.writeInt(categoryCounts.get(i)[0]);
+                out.writeLong(categoryCents.get(i)[0]);
+                i++;
+            }
+            out.writeInt(compressed.length);
+            out.writeInt(rawBytes.length);
+            out.write(compressed);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return open(file);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getCount() {
+        return rows;
+    }
+
+    public int getHighestId() {
+        return highestId;
+    }
+
+    public double getAmount()
+    {
+        long cents = 0;
+        for (long month: monthCents)
+        {
+            cents += month;
+        }
+        return cents / 100.0;
+    }
+
+    /**
+     * Returns the number of expenses in the given month, or 0 for a month of another year.
+     */
+    public int getCount(YearMonth month)
+    {
+        return month.getYear() == year ? monthCounts[month.getMonthValue() - 1] : 0;
+    }
+
+    /**
+     * Returns the total amount of the given month, or 0 for a month of another year.
+     */
+    public double getAmount(YearMonth month)
+    {
+        return month.getYear() == year ? monthCents[month.getMonthValue() - 1] / 100.0 : 0;
+    }
+
+    /**
+     * Returns the number of expenses in a category, ignoring case like the category views.
+     */
+    public int getCategoryCount(String category)
+    {
+        int count = 0;
+        for (int i = 0; i < categories.size(); i++)
+        {
+            if (categories.get(i).equalsIgnoreCase(category))
+                count += categoryCounts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total amount of a category, ignoring case like the category views.
+     */
+    public double getCategoryAmount(String category)
+    {
+        long cents = 0;
+        for (int i = 0; i < categories.size(); i++)
+        {
+            if (categories.get(i).equalsIgnoreCase(category))
+                cents += categoryCents.get(i);
+        }
+        return cents / 100.0;
+    }
+
+    /**
+     * Decompresses and returns the expenses of the archive, sorted by date.
+     *
+     * @throws IOException if the file cannot be read or is damaged
+     */
+    public synchronized List<Expense> expenses() throws IOException
+    {
+        List<Expense> loaded = cached.get();
+        if (loaded != null)
+            return loaded;
+
+        byte[] compressed = new byte[compressedLength];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            in.skipNBytes(payloadOffset);
+            in.readFully(compressed);
+        }
+        Cursor cursor = new Cursor(inflate(compressed, rawLength));
+
+        long[] days = new long[rows];
+        int[] ids = new int[rows];
+        long[] cents = new long[rows];
+        int[] categoryNumbers = new int[rows];
+
+        long day = LocalDate.of(year, 1, 1).toEpochDay();
+        for (int i = 0; i < rows; i++)
+        {
+            day += cursor.readVarLong();
+            days[i] = day;
+        }
+        long id = 0;
+        for (int i = 0; i < rows; i++)
+        {
+            id += unZigZag(cursor.readVarLong());
+            ids[i] = (int) id;
+        }
+        for (int i = 0; i < rows; i++)
+        {
+            cents[i] = unZigZag(cursor.readVarLong());
+        }
+        for (int i = 0; i < rows; i++)
+        {
+            categoryNumbers[i] = (int) cursor.readVarLong();
+        }
+
+        // Descriptions repeat a lot, so equal ones share one String
+        Map<String, String> names = new HashMap<>();
+        loaded = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++)
+        {
+            String name = names.computeIfAbsent(cursor.readString(), n -> n);
+            loaded.add(new Expense(ids[i], name, cents[i] / 100.0, LocalDate.ofEpochDay(days[i]),
+                    categories.get(categoryNumbers[i])));
+        }
+
+        loaded = Collections.unmodifiableList(loaded);
+        cached = new SoftReference<>(loaded);
+        return loaded;
+    }
+
+    private static long toCents(double amount)
+    {
+        return Math.round(amount * 100);
+    }
+
+    private static long zigZag(long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value)
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static byte[] deflate(byte[] raw)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(raw);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished())
+        {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private byte[] inflate(byte[] compressed, int length) throws IOException
+    {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        byte[] raw = new byte[length];
+
+        try
+        {
+            int offset = 0;
+            while (offset < length && !inflater.finished())
+            {
+                int n = inflater.inflate(raw, offset, length - offset);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                offset += n;
+            }
+            if (offset != length)
+                throw new IOException("Damaged cold archive: " + file);
+        }
+        catch (DataFormatException ex)
+        {
+            throw new IOException("Damaged cold archive: " + file, ex);
+        }
+        finally
+        {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    /**
+     * Reads variable-length numbers and strings from the decompressed columns.
+     */
+    private static class Cursor
+    {
+        private final byte[] data;
+        private int position;
+
+        Cursor(byte[] data)
+        {
+            this.data = data;
+        }
+
+        long readVarLong()
+        {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((b & 0x80) != 0);
+            return value;
+        }
+
+        String readString()
+        {
+            int length = (int) readVarLong();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package storage.cold;
+
+import model.Expense;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The cold archives of all closed years, one {@link ColdArchive} file per year.
+ * <p>
+ * Opening the store reads only the archive headers. Totals are answered from the header
+ * aggregates; the rows of a year are decompressed only when a listing asks for expenses
+ * dated in that year or in one of its categories.
+ */
+public class ColdStore
+{
+    private static final String SUFFIX = ".cold";
+
+    private final Path directory;
+    private final Map<Integer, ColdArchive> archives = new ConcurrentSkipListMap<>();
+    private final Map<Path, FileTime> opened = new ConcurrentHashMap<>();
+
+    /**
+     * Opens the archives in the given directory, creating the directory if needed.
+     *
+     * @throws IOException if the directory cannot be created or an archive cannot be read
+     */
+    public ColdStore(Path directory) throws IOException
+    {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        refresh();
+    }
+
+    /**
+     * Opens the archives that were added or replaced since the last call, for example by
+     * another process that archived a year that just closed.
+     *
+     * @return true if an archive was added or replaced
+     * @throws IOException if an archive cannot be read
+     */
+    public synchronized boolean refresh() throws IOException
+    {
+        boolean changed = false;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "expenses-*" + SUFFIX))
+        {
+            for (Path file: files)
+            {
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (modified.equals(opened.get(file)))
+                    continue;
+
+                ColdArchive archive = ColdArchive.open(file);
+                archives.put(archive.getYear(), archive);
+                opened.put(file, modified);
+                Expense.reserveId(archive.getHighestId());
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Moves expenses into the archives of their years. Expenses already archived under the
+     * same ID are replaced, so archiving the same expenses twice keeps one copy of each.
+     *
+     * @param expenses the expenses to archive, of any closed years
+     * @throws IOException if an archive cannot be read or written
+     */
+    public synchronized void archive(List<Expense> expenses) throws IOException
+    {
+        Map<Integer, List<Expense>> byYear = new TreeMap<>();
+        for (Expense expense: expenses)
+        {
+            byYear.computeIfAbsent(expense.getDateOfExpense().getYear(), y -> new ArrayList<>()).add(expense);
+        }
+
+        for (Map.Entry<Integer, List<Expense>> entry: byYear.entrySet())
+        {
+            int year = entry.getKey();
+            Map<Integer, Expense> merged = new LinkedHashMap<>();
+            ColdArchive existing = archives.get(year);
+            if (existing != null)
+            {
+                for (Expense expense: existing.expenses())
+                {
+                    merged.put(expense.getId(), expense);
+                }
+            }
+            for (Expense expense: entry.getValue())
+            {
+                merged.put(expense.getId(), expense);
+            }
+
+            Path file = directory.resolve("expenses-" + year + SUFFIX);
+            archives.put(year, ColdArchive.write(file, year, new ArrayList<>(merged.values())));
+            opened.put(file, Files.getLastModifiedTime(file));
+        }
+    }
+
+    public boolean isEmpty() {
+        return archives.isEmpty();
+    }
+
+    /**
+     * Returns the archived years in ascending order.
+     */
+    public List<Integer> getYears() {
+        return new ArrayList<>(archives.keySet());
+    }
+
+    public long getCount()
+    {
+        long count = 0;
+        for (ColdArchive archive: archives.values())
+        {
+            count += archive.getCount();
+        }
+        return count;
+    }
+
+    public double getAmount()
+    {
+        double amount = 0;
+        for (ColdArchive archive: archives.values())
+        {
+            amount += archive.getAmount();
+        }
+        return amount;
+    }
+
+    public long getCount(YearMonth month)
+    {
+        ColdArchive archive = archives.get(month.getYear());
+        return archive == null ? 0 : archive.getCount(month);
+    }
+
+    public double getAmount(YearMonth month)
+    {
+        ColdArchive archive = archives.get(month.getYear());
+        return archive == null ? 0 : archive.getAmount(month);
+    }
+
+    public long getCategoryCount(String category)
+    {
+        long count = 0;
+        for (ColdArchive archive: archives.values())
+        {
+            count += archive.getCategoryCount(category);
+        }
+        return count;
+    }
+
+    public double getCategoryAmount(String category)
+    {
+        double amount = 0;
+        for (ColdArchive archive: archives.values())
+        {
+            amount += archive.getCategoryAmount(category);
+        }
+        return amount;
+    }
+
+    /**
+     * Returns the archived expenses dated between two dates, inclusive, sorted by date.
+     * Only the years that overlap the range are decompressed.
+     *
+     * @throws IOException if an archive cannot be read
+     */
+    public List<Expense> expensesBetween(LocalDate from, LocalDate to) throws IOException
+    {
+        List<Expense> result = new ArrayList<>();
+        for (ColdArchive archive: archives.values())
+        {
+            if (archive.getYear() < from.getYear() || archive.getYear() > to.getYear())
+                continue;
+
+            for (Expense expense: archive.expenses())
+            {
+                LocalDate date = expense.getDateOfExpense();
+                if (!date.isBefore(from) && !date.isAfter(to))
+                    result.add(expense);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the archived expenses of a category, ignoring case, sorted by date.
+     * Years whose header shows no expenses in the category are not decompressed.
+     *
+     * @throws IOException if an archive cannot be read
+     */
+    public List<Expense> expensesInCategory(String category) throws IOException
+    {
+        List<Expense> result = new ArrayList<>();
+        for (ColdArchive archive: archives.values())
+        {
+            if (archive.getCategoryCount(category) == 0)
+                continue;
+
+            for (Expense expense: archive.expenses())
+            {
+                if (expense.getCategory().equalsIgnoreCase(category))
+                    result.add(expense);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns every archived expense, sorted by date.
+     *
+     * @throws IOException if an archive cannot be read
+     */
+    public List<Expense> expenses() throws IOException
+    {
+        List<Expense> result = new ArrayList<>();
+        for (ColdArchive archive: archives.values())
+        {
+            result.addAll(archive.expenses());
+        }
+        return result;
+    }
+}
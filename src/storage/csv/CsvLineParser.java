@@ -0,0 +1,82 @@
+package storage.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a single CSV line into its fields.
+ * <p>
+ * Fields may be enclosed in double quotes, in which case they can contain the
+ * delimiter, and a doubled quote ({@code ""}) stands for one literal quote.
+ * Unquoted fields are returned as they are, quoted fields without the quotes.
+ * <p>
+ * Used for bank statements, which are split into lines so that chunks of them can be
+ * parsed in parallel. Files written by this program are read with {@link CsvRecordReader},
+ * whose quoted fields may also contain line breaks.
+ */
+public class CsvLineParser
+{
+    private final char delimiter;
+
+    public CsvLineParser(char delimiter)
+    {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Splits the line into fields.
+     *
+     * @param line the line to split, without the line terminator
+     * @return the fields of the line, or null if a quoted field is not closed
+     */
+    public List<String> split(String line)
+    {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int length = line.length();
+
+        for (int i = 0; i < length; i++)
+        {
+            char c = line.charAt(i);
+            if (quoted)
+            {
+                if (c == '"')
+                {
+                    if (i + 1 < length && line.charAt(i + 1) == '"')
+                    {
+                        field.append('"');
+                        i++;
+                    }
+                    else
+                    {
+                        quoted = false;
+                    }
+                }
+                else
+                {
+                    field.append(c);
+                }
+            }
+            else if (c == '"' && field.length() == 0)
+            {
+                quoted = true;
+            }
+            else if (c == delimiter)
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else
+            {
+                field.append(c);
+            }
+        }
+
+        if (quoted)
+            return null;
+
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,261 @@
+package storage.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the records of a CSV stream one at a time, following RFC 4180.
+ * <p>
+ * Fields may be enclosed in double quotes, in which case they can contain the delimiter
+ * and line breaks, and a doubled quote ({@code ""}) stands for one literal quote. Records
+ * end at CRLF, LF or a lone CR. The characters are scanned straight from an internal
+ * buffer and the field list is reused, so clean records cost no more than splitting lines.
+ * <p>
+ * Malformed records never stop the reader; {@link #getError()} tells what is wrong with
+ * the current record. A quote that is never closed would otherwise swallow the following
+ * records, so a record that spans several lines is only accepted if it is well-formed, has
+ * the expected number of fields and spans at most {@value #MAX_RECORD_LINES} lines.
+ * Otherwise only its first line is reported as malformed and reading resumes on the line
+ * after it.
+ */
+public class CsvRecordReader implements Closeable
+{
+    public static final int MAX_RECORD_LINES = 16;
+
+    private static final int NONE = -2;
+
+    private final Reader in;
+    private final char delimiter;
+    private final char[] buffer = new char[64 * 1024];
+    private int position;
+    private int limit;
+    private int unread = NONE;
+    private String pushback;
+    private int pushbackPosition;
+
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private final StringBuilder raw = new StringBuilder();
+    private long line = 1;
+    private long recordLine;
+    private String error;
+    private int minFields = 1;
+    private int maxFields = Integer.MAX_VALUE;
+
+    public CsvRecordReader(Reader in, char delimiter)
+    {
+        this.in = in;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Sets how many fields a record has to have to span several lines.
+     */
+    public void expectFields(int min, int max)
+    {
+        this.minFields = min;
+        this.maxFields = max;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false at the end of the stream
+     * @throws IOException if the stream cannot be read
+     */
+    public boolean next() throws IOException
+    {
+        fields.clear();
+        field.setLength(0);
+        raw.setLength(0);
+        error = null;
+        recordLine = line;
+
+        int c = read();
+        if (c < 0)
+            return false;
+
+        boolean quoted = false;
+        boolean afterQuote = false;
+        int lines = 1;
+        int firstLineEnd = -1;
+        while (true)
+        {
+            if (c < 0)
+            {
+                if (quoted)
+                    return unclosed(firstLineEnd, "");
+                return complete(firstLineEnd, "");
+            }
+
+            char ch = (char) c;
+            if (quoted)
+            {
+                if (ch == '"')
+                {
+                    raw.append('"');
+                    c = read();
+                    if (c == '"')
+                    {
+                        field.append('"');
+                        raw.append('"');
+                    }
+                    else
+                    {
+                        quoted = false;
+                        afterQuote = true;
+                        continue;
+                    }
+                }
+                else
+                {
+                    if (ch == '\n')
+                    {
+                        if (firstLineEnd < 0)
+                            firstLineEnd = raw.length();
+                        if (++lines > MAX_RECORD_LINES)
+                            return unclosed(firstLineEnd, "\n");
+                        line++;
+                    }
+                    field.append(ch);
+                    raw.append(ch);
+                }
+            }
+            else if (ch == '\n' || ch == '\r')
+            {
+                if (ch == '\r')
+                {
+                    int next = read();
+                    if (next != '\n' && next >= 0)
+                        unread = next;
+                }
+                line++;
+                return complete(firstLineEnd, "\n");
+            }
+            else if (ch == delimiter)
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+                raw.append(ch);
+            }
+            else if (ch == '"' && field.length() == 0 && !afterQuote)
+            {
+                quoted = true;
+                raw.append(ch);
+            }
+            else
+            {
+                if (afterQuote && error == null)
+                    error = "text after a closing quote";
+                field.append(ch);
+                raw.append(ch);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Returns the fields of the current record. The list is reused by the next call to {@link #next()}.
+     */
+    public List<String> fields() {
+        return fields;
+    }
+
+    /**
+     * Returns the number of the line the current record starts on, counting from 1.
+     */
+    public long getLine() {
+        return recordLine;
+    }
+
+    /**
+     * Returns the text of the current record as it was read, without the line terminator.
+     */
+    public String getRaw() {
+        return raw.toString();
+    }
+
+    /**
+     * Returns whether the current record is an empty line.
+     */
+    public boolean isBlank()
+    {
+        for (int i = 0; i < raw.length(); i++)
+        {
+            if (!Character.isWhitespace(raw.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns what is wrong with the current record, or null if it is well-formed.
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    private boolean complete(int firstLineEnd, String consumed)
+    {
+        fields.add(field.toString());
+        if (firstLineEnd >= 0 && (error != null || fields.size() < minFields || fields.size() > maxFields))
+            return unclosed(firstLineEnd, consumed);
+        return true;
+    }
+
+    // Reports the first line of the record as malformed and reads the lines after it again
+    private boolean unclosed(int firstLineEnd, String consumed)
+    {
+        error = "quote not closed";
+        fields.clear();
+        if (firstLineEnd >= 0)
+        {
+            String rest = raw.substring(firstLineEnd + 1) + consumed
+                    + (unread == NONE ? "" : String.valueOf((char) unread))
+                    + (pushback == null ? "" : pushback.substring(pushbackPosition));
+            raw.setLength(firstLineEnd > 0 && raw.charAt(firstLineEnd - 1) == '\r' ? firstLineEnd - 1 : firstLineEnd);
+            unread = NONE;
+            pushback = rest;
+            pushbackPosition = 0;
+            line = recordLine + 1;
+        }
+        return true;
+    }
+
+    private int read() throws IOException
+    {
+        if (unread != NONE)
+        {
+            int c = unread;
+            unread = NONE;
+            return c;
+        }
+        if (pushback != null)
+        {
+            if (pushbackPosition < pushback.length())
+                return pushback.charAt(pushbackPosition++);
+            pushback = null;
+        }
+        if (position == limit)
+        {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0)
+            {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
@@ -0,0 +1,262 @@
+package storage.csv;
+
+import model.Expense;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.List;
+
+/**
+ * Reads expenses from CSV records written by {@link Expense#AsCsvLine()}:
+ * id, name, amount, date and category.
+ * <p>
+ * The ID, amount and date are checked by hand before they are converted, so a malformed
+ * record is reported through {@link #getReason()} instead of an exception, and clean
+ * records never pay for exception handling. Blank lines are skipped.
+ */
+public class ExpenseCsvReader implements Closeable
+{
+    // Fields of a record with an ID
+    public static final int FIELDS = 5;
+
+    private final CsvRecordReader records;
+    private final boolean idOptional;
+
+    private Expense expense;
+    private String reason;
+    private boolean missingId;
+
+    /**
+     * @param in         the CSV text
+     * @param idOptional whether records may leave out the ID (name, amount, date, category),
+     *                   in which case a new ID is assigned
+     */
+    public ExpenseCsvReader(Reader in, boolean idOptional)
+    {
+        this.records = new CsvRecordReader(in, ',');
+        this.records.expectFields(idOptional ? FIELDS - 1 : FIELDS, FIELDS);
+        this.idOptional = idOptional;
+    }
+
+    /**
+     * Reads the next record that is not blank.
+     *
+     * @return false at the end of the text
+     * @throws IOException if the text cannot be read
+     */
+    public boolean next() throws IOException
+    {
+        expense = null;
+        reason = null;
+        missingId = false;
+        do
+        {
+            if (!records.next())
+                return false;
+        }
+        while (records.isBlank() && records.getError() == null);
+
+        reason = records.getError();
+        if (reason == null)
+            reason = convert(records.fields());
+        return true;
+    }
+
+    /**
+     * Returns the expense of the current record, or null if the record is malformed.
+     */
+    public Expense getExpense() {
+        return expense;
+    }
+
+    /**
+     * Returns why the current record is malformed, or null if it is valid.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Returns whether the current record had no ID, so a new one was assigned.
+     */
+    public boolean isMissingId() {
+        return missingId;
+    }
+
+    /**
+     * Returns the number of the line the current record starts on, counting from 1.
+     */
+    public long getLine() {
+        return records.getLine();
+    }
+
+    /**
+     * Returns the text of the current record as it was read.
+     */
+    public String getRecord() {
+        return records.getRaw();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        records.close();
+    }
+
+    // Sets the expense and returns null, or returns what is wrong with the fields
+    private String convert(List<String> fields)
+    {
+        int count = fields.size();
+        int first;
+        if (count == 5)
+            first = 1;
+        else if (count == 4 && idOptional)
+            first = 0;
+        else
+            return "expected " + (idOptional ? "4 or 5" : "5") + " fields, found " + count;
+
+        int id = 0;
+        if (first == 1)
+        {
+            String idText = fields.get(0).trim();
+            id = parseId(idText);
+            if (id < 0)
+                return "invalid ID '" + idText + "'";
+        }
+
+        String amountText = fields.get(first + 1).trim();
+        double amount = isDecimal(amountText) ? Double.parseDouble(amountText) : Double.NaN;
+        if (!Double.isFinite(amount))
+            return "invalid amount '" + amountText + "'";
+
+        String dateText = fields.get(first + 2).trim();
+        LocalDate date = parseDate(dateText);
+        if (date == null)
+            return "invalid date '" + dateText + "'";
+
+        String name = fields.get(first).trim();
+        String category = fields.get(first + 3).trim();
+        if (first == 1)
+            expense = new Expense(id, name, amount, date, category);
+        else
+        {
+            expense = new Expense(name, amount, date, category);
+            missingId = true;
+        }
+        return null;
+    }
+
+    /**
+     * Parses a non-negative decimal integer that fits an int.
+     *
+     * @return the value, or -1 if the text is not one
+     */
+    static int parseId(String text)
+    {
+        int length = text.length();
+        if (length == 0 || length > 10)
+            return -1;
+
+        long value = 0;
+        for (int i = 0; i < length; i++)
+        {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    /**
+     * Checks that {@link Double#parseDouble(String)} accepts the text as a number:
+     * an optional sign, digits with an optional decimal point, and an optional exponent
+     * as written for large amounts, such as {@code 1.5E7}.
+     */
+    static boolean isDecimal(String text)
+    {
+        int length = text.length();
+        int i = 0;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+            i++;
+
+        int digits = 0;
+        while (i < length && isDigit(text.charAt(i)))
+        {
+            i++;
+            digits++;
+        }
+        if (i < length && text.charAt(i) == '.')
+        {
+            i++;
+            while (i < length && isDigit(text.charAt(i)))
+            {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0)
+            return false;
+
+        if (i < length && (text.charAt(i) == 'E' || text.charAt(i) == 'e'))
+        {
+            i++;
+            if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+                i++;
+            int exponentStart = i;
+            while (i < length && isDigit(text.charAt(i)))
+            {
+                i++;
+            }
+            if (i == exponentStart)
+                return false;
+        }
+        return i == length;
+    }
+
+    /**
+     * Parses an ISO date (yyyy-mm-dd) and checks that the day exists.
+     *
+     * @return the date, or null if the text is not a valid date
+     */
+    static LocalDate parseDate(String text)
+    {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-')
+            return null;
+
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1)
+            return null;
+
+        int monthLength = switch (month)
+        {
+            case 2 -> Year.isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+        return day > monthLength ? null : LocalDate.of(year, month, day);
+    }
+
+    private static int digits(String text, int from, int to)
+    {
+        int value = 0;
+        for (int i = from; i < to; i++)
+        {
+            char c = text.charAt(i);
+            if (!isDigit(c))
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,102 @@
+package storage.csv;
+
+import model.Expense;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the records that could not be loaded, so they are not lost when the file they
+ * came from is written again without them.
+ * <p>
+ * Each entry is one CSV record: when it was quarantined, the file it came from, the line
+ * it started on, the reason and the original record. Entries are collected while a file
+ * is read and written together by {@link #flush()}; a record that is already in the
+ * quarantine file is not added again, so loading the same file twice keeps one copy.
+ * The quarantine file is only read when there is something to add.
+ */
+public class QuarantineFile
+{
+    public static final String FILE_NAME = "quarantine.csv";
+
+    private static final String HEADER = "quarantined,source,line,reason,record";
+
+    private final Path file;
+    private final List<String[]> pending = new ArrayList<>();
+
+    public QuarantineFile(Path file)
+    {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Collects a malformed record, to be written by the next {@link #flush()}.
+     *
+     * @param source the file the record came from
+     * @param line   the line the record started on
+     * @param reason what is wrong with the record
+     * @param record the record as it was read
+     */
+    public synchronized void add(String source, String line, String reason, String record)
+    {
+        pending.add(new String[] {source, line, reason, record});
+    }
+
+    /**
+     * Appends the collected records that are not in the quarantine file yet.
+     *
+     * @return the number of records written
+     * @throws IOException if the quarantine file cannot be read or written
+     */
+    public synchronized int flush() throws IOException
+    {
+        if (pending.isEmpty())
+            return 0;
+
+        boolean exists = Files.exists(file);
+        Set<String> known = new HashSet<>();
+        if (exists)
+        {
+            try (CsvRecordReader records = new CsvRecordReader(Files.newBufferedReader(file, StandardCharsets.UTF_8), ','))
+            {
+                while (records.next())
+                {
+                    List<String> fields = records.fields();
+                    if (fields.size() == 5)
+                        known.add(fields.get(1) + '\n' + fields.get(4));
+                }
+            }
+        }
+
+        String now = LocalDateTime.now().withNano(0).toString();
+        int written = 0;
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)))
+        {
+            if (!exists)
+                writer.println(HEADER);
+            for (String[] entry: pending)
+            {
+                if (!known.add(entry[0] + '\n' + entry[3]))
+                    continue;
+                writer.println(now + "," + Expense.quote(entry[0]) + "," + Expense.quote(entry[1]) + "," + Expense.quote(entry[2]) + "," + Expense.quote(entry[3]));
+                written++;
+            }
+        }
+        pending.clear();
+        return written;
+    }
+}
@@ -0,0 +1,64 @@
+package storage.events;
+
+import model.Expense;
+
+/**
+ * Describes a single change made to the expense ledger.
+ * <p>
+ * Added expenses only carry an {@code after} value, deleted expenses only a
+ * {@code before} value, and updates carry both so that listeners can undo the
+ * old state and apply the new one.
+ */
+public class ExpenseEvent
+{
+    public enum Type
+    {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Expense before;
+    private final Expense after;
+
+    private ExpenseEvent(Type type, Expense before, Expense after)
+    {
+        this.type = type;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static ExpenseEvent added(Expense expense)
+    {
+        return new ExpenseEvent(Type.ADDED, null, expense);
+    }
+
+    public static ExpenseEvent updated(Expense before, Expense after)
+    {
+        return new ExpenseEvent(Type.UPDATED, before, after);
+    }
+
+    public static ExpenseEvent deleted(Expense expense)
+    {
+        return new ExpenseEvent(Type.DELETED, expense, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Expense getBefore() {
+        return before;
+    }
+
+    public Expense getAfter() {
+        return after;
+    }
+
+    @Override
+    public String toString()
+    {
+        return type + " before: " + before + ", after: " + after;
+    }
+}
@@ -0,0 +1,147 @@
+package storage.events;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes ledger change events to registered listeners.
+ * <p>
+ * Two kinds of listeners are supported. Synchronous listeners (such as the
+ * materialized views) are called on the writer's thread, so they are always up to
+ * date when the write returns. Asynchronous listeners are fed from a bounded queue
+ * by a single daemon dispatcher thread. Publishing never blocks the writer: when the
+ * queue is full the event is dropped for the asynchronous listeners and counted.
+ */
+public class ExpenseEventBus
+{
+    private static final ExpenseEvent SHUTDOWN = ExpenseEvent.deleted(null);
+
+    private final List<ExpenseListener> syncListeners = new CopyOnWriteArrayList<>();
+    private final List<ExpenseListener> asyncListeners = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<ExpenseEvent> queue;
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    public ExpenseEventBus(int capacity)
+    {
+        queue = new ArrayBlockingQueue<>(capacity);
+        dispatcher = new Thread(this::dispatchLoop, "expense-event-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Registers a listener that is called on the publishing thread.
+     * Such listeners must be cheap, since they are part of every write.
+     *
+     * @param listener the listener to register
+     */
+    public void addSyncListener(ExpenseListener listener)
+    {
+        syncListeners.add(listener);
+    }
+
+    /**
+     * Registers a listener that is called from the dispatcher thread.
+     *
+     * @param listener the listener to register
+     */
+    public void addListener(ExpenseListener listener)
+    {
+        asyncListeners.add(listener);
+    }
+
+    public void removeListener(ExpenseListener listener)
+    {
+        syncListeners.remove(listener);
+        asyncListeners.remove(listener);
+    }
+
+    /**
+     * Publishes an event. Synchronous listeners are invoked immediately, the event is
+     * then offered to the dispatch queue without waiting for free space.
+     *
+     * @param event the event to publish
+     */
+    public void publish(ExpenseEvent event)
+    {
+        for (ExpenseListener listener: syncListeners)
+        {
+            listener.onEvent(event);
+        }
+
+        if (!asyncListeners.isEmpty() && running && !queue.offer(event))
+        {
+            droppedEvents.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of events that could not be queued because the queue was full
+     */
+    public long getDroppedEvents()
+    {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Stops the dispatcher thread after the events already queued have been delivered.
+     */
+    public void close()
+    {
+        if (!running)
+            return;
+        running = false;
+
+        try
+        {
+            // make room for the marker if the queue happens to be full
+            while (!queue.offer(SHUTDOWN, 100, TimeUnit.MILLISECONDS))
+            {
+                if (!dispatcher.isAlive())
+                    return;
+            }
+            dispatcher.join(1000);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatchLoop()
+    {
+        while (true)
+        {
+            ExpenseEvent event;
+            try
+            {
+                event = queue.take();
+            }
+            catch (InterruptedException ex)
+            {
+                return;
+            }
+
+            if (event == SHUTDOWN)
+                return;
+
+            for (ExpenseListener listener: asyncListeners)
+            {
+                try
+                {
+                    listener.onEvent(event);
+                }
+                catch (RuntimeException ex)
+                {
+                    System.out.println("Expense listener failed: " + ex.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package storage.events;
+
+/**
+ * Receives change events published by the expense ledger.
+ */
+public interface ExpenseListener
+{
+    void onEvent(ExpenseEvent event);
+}
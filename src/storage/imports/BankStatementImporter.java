@@ -0,0 +1,324 @@
+package storage.imports;
+
+import model.Expense;
+import storage.Storage;
+import storage.csv.CsvLineParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Imports large bank statement exports into the ledger.
+ * <p>
+ * The file is split into chunks of lines that are parsed in parallel. Every parsed row is
+ * then checked against the stored expenses of the same dates, archived years included,
+ * with a Bloom filter over (date, amount in cents, normalized description); only when the
+ * filter reports a possible match is the row compared with the real expenses of that day.
+ * Accepted rows are committed to the ledger in batches, and each batch is written to disk
+ * with a single append.
+ */
+public class BankStatementImporter
+{
+    private static final int CHUNK_SIZE = 8192;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final Storage storage;
+    private final int batchSize;
+
+    public BankStatementImporter(Storage storage, int batchSize)
+    {
+        this.storage = storage;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports every row of the given file.
+     *
+     * @param file   the bank export to import
+     * @param layout the column mapping and formats of the export
+     * @return the counts of imported, duplicate and rejected rows
+     * @throws IOException if the file cannot be read
+     */
+    public ImportResult importFile(Path file, ImportLayout layout) throws IOException
+    {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        int first = layout.hasHeader() && !lines.isEmpty() ? 1 : 0;
+
+        // === Parse chunks in parallel, keeping the file order ===
+        int chunks = (lines.size() - first + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<ParsedChunk> parsed = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(c -> parseChunk(lines, first + c * CHUNK_SIZE,
+                        Math.min(lines.size(), first + (c + 1) * CHUNK_SIZE), layout))
+                .collect(Collectors.toList());
+
+        // === Detect duplicates against the stored expenses of the same dates ===
+        LocalDate earliest = LocalDate.MAX;
+        LocalDate latest = LocalDate.MIN;
+        for (ParsedChunk chunk: parsed)
+        {
+            for (ImportedRow row: chunk.rows)
+            {
+                earliest = row.date.isBefore(earliest) ? row.date : earliest;
+                latest = row.date.isAfter(latest) ? row.date : latest;
+            }
+        }
+        List<Expense> ledger = earliest.isAfter(latest) ? List.of() : storage.expensesBetween(earliest, latest);
+        BloomFilter filter = new BloomFilter(ledger.size(), FALSE_POSITIVE_RATE);
+        for (Expense expense: ledger)
+        {
+            filter.add(key(expense.getDateOfExpense(), expense.getAmount(), expense.getName()));
+        }
+        Map<LocalDate, List<Expense>> byDate = null; // built on the first possible duplicate only
+
+        // === Commit in batches ===
+        ImportResult result = new ImportResult();
+        List<Expense> batch = new ArrayList<>(batchSize);
+        for (ParsedChunk chunk: parsed)
+        {
+            result.addRowsRead(chunk.rowsRead);
+            result.addRejected(chunk.rejected);
+
+            for (ImportedRow row: chunk.rows)
+            {
+                if (filter.mightContain(key(row.date, row.amount, row.description)))
+                {
+                    if (byDate == null)
+                        byDate = groupByDate(ledger);
+                    if (isDuplicate(byDate.get(row.date), row))
+                    {
+                        result.addDuplicate();
+                        continue;
+                    }
+                }
+
+                batch.add(new Expense(row.description, row.amount, row.date, row.category));
+                if (batch.size() >= batchSize)
+                {
+                    storage.addAll(batch);
+                    result.addImported(batch.size());
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+
+        if (!batch.isEmpty())
+        {
+            storage.addAll(batch);
+            result.addImported(batch.size());
+        }
+        return result;
+    }
+
+    private ParsedChunk parseChunk(List<String> lines, int from, int to, ImportLayout layout)
+    {
+        ParsedChunk chunk = new ParsedChunk();
+        CsvLineParser parser = new CsvLineParser(layout.getDelimiter());
+
+        for (int i = from; i < to; i++)
+        {
+            String line = lines.get(i);
+            if (line.isBlank())
+                continue;
+
+            chunk.rowsRead++;
+            int lineNumber = i + 1;
+            List<String> fields = parser.split(line);
+            if (fields == null)
+            {
+                chunk.rejected.add("Line " + lineNumber + ": unterminated quoted field");
+                continue;
+            }
+            if (fields.size() < layout.getRequiredColumns())
+            {
+                chunk.rejected.add("Line " + lineNumber + ": expected at least " + layout.getRequiredColumns()
+                        + " columns but found " + fields.size());
+                continue;
+            }
+
+            LocalDate date = parseDate(fields.get(layout.getDateColumn()).trim(), layout);
+            if (date == null)
+            {
+                chunk.rejected.add("Line " + lineNumber + ": invalid date " + fields.get(layout.getDateColumn()));
+                continue;
+            }
+
+            double signed = parseAmount(fields.get(layout.getAmountColumn()), layout);
+            if (Double.isNaN(signed) || signed == 0)
+            {
+                chunk.rejected.add("Line " + lineNumber + ": invalid amount " + fields.get(layout.getAmountColumn()));
+                continue;
+            }
+            double amount = layout.isDebitsNegative() ? -signed : signed;
+            if (amount < 0)
+            {
+                chunk.rejected.add("Line " + lineNumber + ": credit of " + fields.get(layout.getAmountColumn()).trim()
+                        + " is not an expense");
+                continue;
+            }
+
+            String description = fields.get(layout.getDescriptionColumn()).trim();
+            if (description.isEmpty())
+            {
+                chunk.rejected.add("Line " + lineNumber + ": empty description");
+                continue;
+            }
+
+            String category = layout.getCategoryColumn() >= 0 ? fields.get(layout.getCategoryColumn()).trim() : "";
+            if (category.isEmpty())
+                category = layout.getDefaultCategory();
+
+            chunk.rows.add(new ImportedRow(date, amount, description, category));
+        }
+        return chunk;
+    }
+
+    private static LocalDate parseDate(String text, ImportLayout layout)
+    {
+        for (DateTimeFormatter format: layout.getDateFormats())
+        {
+            try
+            {
+                return LocalDate.parse(text, format);
+            }
+            catch (DateTimeParseException ex)
+            {
+                // try the next format
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses an amount as found in bank exports. Currency symbols, spaces and thousands
+     * separators are ignored. A minus sign before or after the number, or accounting
+     * parentheses such as {@code (12.50)}, make the amount negative.
+     *
+     * @return the signed amount, or NaN if the text is not a number
+     */
+    private static double parseAmount(String text, ImportLayout layout)
+    {
+        StringBuilder digits = new StringBuilder(text.length() + 1);
+        boolean negative = false;
+        boolean parenthesized = false;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (Character.isDigit(c))
+                digits.append(c);
+            else if (c == (layout.isDecimalComma() ? ',' : '.'))
+                digits.append('.');
+            else if (c == '-' || c == '\u2212')
+                negative = !negative;
+            else if (c == '(' && digits.length() == 0)
+                parenthesized = true;
+            else if (c == ')' && parenthesized)
+                negative = !negative;
+        }
+
+        if (digits.length() == 0)
+            return Double.NaN;
+        if (negative)
+            digits.insert(0, '-');
+
+        try
+        {
+            return Double.parseDouble(digits.toString());
+        }
+        catch (NumberFormatException ex)
+        {
+            return Double.NaN;
+        }
+    }
+
+    private static Map<LocalDate, List<Expense>> groupByDate(List<Expense> ledger)
+    {
+        Map<LocalDate, List<Expense>> byDate = new HashMap<>();
+        for (Expense expense: ledger)
+        {
+            byDate.computeIfAbsent(expense.getDateOfExpense(), d -> new ArrayList<>()).add(expense);
+        }
+        return byDate;
+    }
+
+    private static boolean isDuplicate(List<Expense> sameDay, ImportedRow row)
+    {
+        if (sameDay == null)
+            return false;
+
+        long cents = Math.round(row.amount * 100);
+        String description = normalize(row.description);
+        for (Expense expense: sameDay)
+        {
+            if (Math.round(expense.getAmount() * 100) == cents && normalize(expense.getName()).equals(description))
+                return true;
+        }
+        return false;
+    }
+
+    private static String key(LocalDate date, double amount, String description)
+    {
+        return date.toEpochDay() + "|" + Math.round(amount * 100) + "|" + normalize(description);
+    }
+
+    /**
+     * Lower-cases the description and keeps only letters and digits separated by single
+     * spaces, so that the same merchant matches across differently formatted exports.
+     */
+    static String normalize(String description)
+    {
+        StringBuilder result = new StringBuilder(description.length());
+        boolean space = false;
+        for (int i = 0; i < description.length(); i++)
+        {
+            char c = description.charAt(i);
+            if (Character.isLetterOrDigit(c))
+            {
+                if (space && result.length() > 0)
+                    result.append(' ');
+                result.append(c);
+                space = false;
+            }
+            else
+            {
+                space = true;
+            }
+        }
+        return result.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static class ImportedRow
+    {
+        final LocalDate date;
+        final double amount;
+        final String description;
+        final String category;
+
+        ImportedRow(LocalDate date, double amount, String description, String category)
+        {
+            this.date = date;
+            this.amount = amount;
+            this.description = description;
+            this.category = category;
+        }
+    }
+
+    private static class ParsedChunk
+    {
+        int rowsRead;
+        final List<ImportedRow> rows = new ArrayList<>();
+        final List<String> rejected = new ArrayList<>();
+    }
+}
@@ -0,0 +1,71 @@
+package storage.imports;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A fixed-size Bloom filter over strings.
+ * <p>
+ * A negative answer from {@link #mightContain(String)} is always correct, a positive
+ * answer may be a false positive and has to be confirmed against the real data.
+ * The bit array and the number of hash functions are derived from the expected
+ * number of keys and the accepted false positive rate.
+ */
+public class BloomFilter
+{
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(int expectedKeys, double falsePositiveRate)
+    {
+        int n = Math.max(1, expectedKeys);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, m);
+        bits = new long[(int) ((m + 63) / 64)];
+        bitCount = bits.length * 64L;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void add(String key)
+    {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++)
+        {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String key)
+    {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++)
+        {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    // 64-bit FNV-1a followed by a finalizer mix, so both halves are usable as independent hashes
+    private static long hash(String key)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (byte b: key.getBytes(StandardCharsets.UTF_8))
+        {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,143 @@
+package storage.imports;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Describes how the columns of a foreign CSV export map to expense fields.
+ * <p>
+ * Columns are given as zero-based indexes in a spec such as
+ * {@code date=0,description=2,amount=3,category=4}; the category column is optional
+ * and rows without one get the default category. Several date patterns can be given,
+ * separated by {@code |}, and are tried in order.
+ * <p>
+ * Exports differ in the sign they give to spending: some write debits as positive
+ * amounts, others as negative ones or in parentheses. Rows with the other sign are
+ * credits, such as refunds and income, and are not imported.
+ */
+public class ImportLayout
+{
+    public static final String DEFAULT_COLUMNS = "date=0,description=1,amount=2";
+    public static final String DEFAULT_DATE_FORMATS = "yyyy-MM-dd";
+    public static final String DEFAULT_CATEGORY = "Imported";
+
+    private int dateColumn = -1;
+    private int descriptionColumn = -1;
+    private int amountColumn = -1;
+    private int categoryColumn = -1;
+    private final List<DateTimeFormatter> dateFormats = new ArrayList<>();
+    private final char delimiter;
+    private final boolean hasHeader;
+    private final boolean decimalComma;
+    private final boolean debitsNegative;
+    private final String defaultCategory;
+
+    /**
+     * Creates a layout from its textual description.
+     *
+     * @param columns         the column spec, e.g. {@code date=0,description=1,amount=2}
+     * @param dateFormats     the date patterns, separated by {@code |}
+     * @param delimiter       the field delimiter
+     * @param hasHeader       whether the first line is a header and has to be skipped
+     * @param decimalComma    whether amounts use a comma as decimal separator
+     * @param debitsNegative  whether spending is written as negative amounts, so positive ones are credits
+     * @param defaultCategory the category of rows that have no category column
+     * @throws IllegalArgumentException if the column spec or a date pattern is invalid
+     */
+    public ImportLayout(String columns, String dateFormats, char delimiter, boolean hasHeader,
+                        boolean decimalComma, boolean debitsNegative, String defaultCategory)
+    {
+        for (String mapping: columns.split(","))
+        {
+            String[] parts = mapping.split("=");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Invalid column mapping: " + mapping);
+
+            int index;
+            try
+            {
+                index = Integer.parseInt(parts[1].trim());
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new IllegalArgumentException("Invalid column number: " + mapping);
+            }
+
+            switch (parts[0].trim().toLowerCase(Locale.ROOT))
+            {
+                case "date" -> dateColumn = index;
+                case "description" -> descriptionColumn = index;
+                case "amount" -> amountColumn = index;
+                case "category" -> categoryColumn = index;
+                default -> throw new IllegalArgumentException("Unknown column: " + parts[0].trim());
+            }
+        }
+
+        if (dateColumn < 0 || descriptionColumn < 0 || amountColumn < 0)
+            throw new IllegalArgumentException("The date, description and amount columns are required.");
+
+        for (String pattern: dateFormats.split("\\|"))
+        {
+            if (!pattern.isBlank())
+                this.dateFormats.add(DateTimeFormatter.ofPattern(pattern.trim(), Locale.ROOT));
+        }
+        if (this.dateFormats.isEmpty())
+            throw new IllegalArgumentException("At least one date format is required.");
+
+        this.delimiter = delimiter;
+        this.hasHeader = hasHeader;
+        this.decimalComma = decimalComma;
+        this.debitsNegative = debitsNegative;
+        this.defaultCategory = defaultCategory;
+    }
+
+    public int getDateColumn() {
+        return dateColumn;
+    }
+
+    public int getDescriptionColumn() {
+        return descriptionColumn;
+    }
+
+    public int getAmountColumn() {
+        return amountColumn;
+    }
+
+    public int getCategoryColumn() {
+        return categoryColumn;
+    }
+
+    public List<DateTimeFormatter> getDateFormats() {
+        return dateFormats;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public boolean hasHeader() {
+        return hasHeader;
+    }
+
+    public boolean isDecimalComma() {
+        return decimalComma;
+    }
+
+    public boolean isDebitsNegative() {
+        return debitsNegative;
+    }
+
+    public String getDefaultCategory() {
+        return defaultCategory;
+    }
+
+    /**
+     * @return the number of columns a row needs to contain every mapped column
+     */
+    public int getRequiredColumns()
+    {
+        return Math.max(Math.max(dateColumn, descriptionColumn), Math.max(amountColumn, categoryColumn)) + 1;
+    }
+}
@@ -0,0 +1,56 @@
+package storage.imports;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts and rejected rows of one bank statement import.
+ */
+public class ImportResult
+{
+    private int rowsRead;
+    private int imported;
+    private int duplicates;
+    private int batches;
+    private final List<String> rejected = new ArrayList<>();
+
+    void addRowsRead(int count) {
+        rowsRead += count;
+    }
+
+    void addImported(int count) {
+        imported += count;
+        batches++;
+    }
+
+    void addDuplicate() {
+        duplicates++;
+    }
+
+    void addRejected(List<String> reasons) {
+        rejected.addAll(reasons);
+    }
+
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return one message per rejected row, with its line number and the reason
+     */
+    public List<String> getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,284 @@
+package storage.ledger;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list that shares structure between versions.
+ * <p>
+ * Elements are stored in a 32-way trie with the last (up to 32) elements kept in a
+ * separate tail array. Appending and replacing an element copy only the path from the
+ * root to the affected leaf, so every version costs O(log32 n) new memory and older
+ * versions stay valid and unchanged. This lets readers keep iterating a version while
+ * writers publish newer ones. Removing an element moves the last element into its
+ * place, so removals cost the same and do not keep the order of the elements.
+ * <p>
+ * The {@link java.util.List} mutators inherited from {@link AbstractList} throw
+ * {@link UnsupportedOperationException}; use {@link #plus}, {@link #with} and
+ * {@link #minus} to derive new versions instead.
+ *
+ * @param <E> the element type
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess
+{
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY =
+            new PersistentVector<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail)
+    {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty()
+    {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    public static <E> PersistentVector<E> of(Iterable<? extends E> elements)
+    {
+        PersistentVector<E> vector = empty();
+        for (E element: elements)
+        {
+            vector = vector.plus(element);
+        }
+        return vector;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index)
+    {
+        return (E) leafFor(index)[index & MASK];
+    }
+
+    /**
+     * Returns a new version with the element appended at the end.
+     *
+     * @param element the element to append
+     * @return the new version
+     */
+    public PersistentVector<E> plus(E element)
+    {
+        // room left in the tail
+        if (size - tailOffset() < WIDTH)
+        {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+
+        // the tail is full, push it into the trie
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift))
+        {
+            // the trie is full too, add a level above the old root
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        }
+        else
+        {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] { element });
+    }
+
+    /**
+     * Returns a new version with the element at {@code index} replaced.
+     *
+     * @param index   the position of the element to replace
+     * @param element the new element
+     * @return the new version
+     */
+    public PersistentVector<E> with(int index, E element)
+    {
+        checkIndex(index);
+        if (index >= tailOffset())
+        {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, assoc(shift, root, index, element), tail);
+    }
+
+    /**
+     * Returns a new version without the element at {@code index}.
+     * <p>
+     * The last element is moved to {@code index} and then dropped from the end, so only
+     * the paths to those two positions are copied. The other elements keep their
+     * positions; callers that track positions must update the one of the moved element.
+     *
+     * @param index the position of the element to remove
+     * @return the new version
+     */
+    public PersistentVector<E> minus(int index)
+    {
+        checkIndex(index);
+        PersistentVector<E> moved = index == size - 1 ? this : with(index, get(size - 1));
+        return moved.withoutLast();
+    }
+
+    // Drops the last element
+    private PersistentVector<E> withoutLast()
+    {
+        if (size == 1)
+            return empty();
+        if (size - tailOffset() > 1)
+            return new PersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+
+        // the tail becomes empty, so the last leaf of the trie becomes the tail
+        Object[] newTail = leafFor(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null)
+            newRoot = new Object[WIDTH];
+        if (shift > BITS && newRoot[1] == null)
+        {
+            // only the first child is left, remove the level above it
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(size - 1, newShift, newRoot, newTail);
+    }
+
+    @Override
+    public Iterator<E> iterator()
+    {
+        return new Iterator<>()
+        {
+            private int index = 0;
+            private Object[] leaf = size > 0 ? leafFor(0) : null;
+
+            @Override
+            public boolean hasNext()
+            {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next()
+            {
+                if (index >= size)
+                    throw new NoSuchElementException();
+                if (index > 0 && (index & MASK) == 0)
+                    leaf = leafFor(index);
+                return (E) leaf[index++ & MASK];
+            }
+        };
+    }
+
+    private int tailOffset()
+    {
+        if (size < WIDTH)
+            return 0;
+        return ((size - 1) >>> BITS) << BITS;
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    private Object[] leafFor(int index)
+    {
+        checkIndex(index);
+        if (index >= tailOffset())
+            return tail;
+
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS)
+        {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode)
+    {
+        int subIndex = ((size - 1) >>> level) & MASK;
+        Object[] result = parent.clone();
+        if (level == BITS)
+        {
+            result[subIndex] = tailNode;
+        }
+        else
+        {
+            Object[] child = (Object[]) parent[subIndex];
+            result[subIndex] = child != null
+                    ? pushTail(level - BITS, child, tailNode)
+                    : newPath(level - BITS, tailNode);
+        }
+        return result;
+    }
+
+    // Copies the path to the last leaf without that leaf, or returns null if nothing is left
+    private Object[] popTail(int level, Object[] node)
+    {
+        int subIndex = ((size - 2) >>> level) & MASK;
+        if (level > BITS)
+        {
+            Object[] child = popTail(level - BITS, (Object[]) node[subIndex]);
+            if (child == null && subIndex == 0)
+                return null;
+            Object[] result = node.clone();
+            result[subIndex] = child;
+            return result;
+        }
+        if (subIndex == 0)
+            return null;
+        Object[] result = node.clone();
+        result[subIndex] = null;
+        return result;
+    }
+
+    private static Object[] newPath(int level, Object[] node)
+    {
+        if (level == 0)
+            return node;
+        Object[] result = new Object[WIDTH];
+        result[0] = newPath(level - BITS, node);
+        return result;
+    }
+
+    private static Object[] assoc(int level, Object[] node, int index, Object element)
+    {
+        Object[] result = node.clone();
+        if (level == 0)
+        {
+            result[index & MASK] = element;
+        }
+        else
+        {
+            int subIndex = (index >>> level) & MASK;
+            result[subIndex] = assoc(level - BITS, (Object[]) node[subIndex], index, element);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,422 @@
+package storage.offheap;
+
+import storage.csv.CsvRecordReader;
+import storage.csv.ExpenseCsvReader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only expense ledger kept outside the Java heap.
+ * <p>
+ * Every expense is a fixed 24-byte struct:
+ * <pre>
+ *   offset  0  int   id
+ *   offset  4  int   epoch day of the expense date
+ *   offset  8  long  amount in cents
+ *   offset 16  int   category code
+ *   offset 20  int   padding
+ * </pre>
+ * Rows are stored in segments of {@value #SEGMENT_ROWS} rows, each one a direct
+ * {@link ByteBuffer} or, for file-backed ledgers, a memory-mapped region of the ledger
+ * file. The heap only holds the segment handles and the small category dictionary, so
+ * heap usage and GC work do not grow with the number of rows. Descriptions are not
+ * stored: this mode is meant for summaries over very large archive ledgers.
+ * <p>
+ * Ledger files are always little-endian, so a file can be opened on any machine.
+ * <p>
+ * Scans read the struct fields with absolute getters and do not allocate per row.
+ * The ledger is not thread-safe for writers; scans may run while no rows are appended.
+ */
+public class OffHeapLedger implements Closeable
+{
+    static final int ROW_BYTES = 24;
+    static final int ID_OFFSET = 0;
+    static final int DAY_OFFSET = 4;
+    static final int CENTS_OFFSET = 8;
+    static final int CATEGORY_OFFSET = 16;
+
+    static final int SEGMENT_ROWS = 1 << 20;
+    static final long SEGMENT_BYTES = (long) SEGMENT_ROWS * ROW_BYTES;
+
+    private static final int HEADER_BYTES = 64;
+    private static final long MAGIC = 0x4C45444745523031L; // "LEDGER01"
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private final List<String> categories = new ArrayList<>();
+    private final Map<String, Integer> categoryCodes = new HashMap<>();
+    private final FileChannel channel; // null for a purely in-memory ledger
+    private final Path file;
+    private MappedByteBuffer header;
+    private long size;
+
+    private OffHeapLedger(FileChannel channel, Path file)
+    {
+        this.channel = channel;
+        this.file = file;
+    }
+
+    /**
+     * Creates an empty ledger backed by direct memory only.
+     */
+    public static OffHeapLedger inMemory()
+    {
+        return new OffHeapLedger(null, null);
+    }
+
+    /**
+     * Opens an existing file-backed ledger. Its rows and the category dictionary (kept in
+     * a {@code .categories} file next to it) are reopened.
+     *
+     * @param file the ledger file
+     * @return the opened ledger
+     * @throws IOException if the file does not exist, cannot be opened or is not a ledger file
+     */
+    public static OffHeapLedger open(Path file) throws IOException
+    {
+        if (!Files.isRegularFile(file))
+            throw new NoSuchFileException(file.toString(), null, "No such ledger file");
+        // mapping the header would grow a shorter file
+        if (Files.size(file) < HEADER_BYTES)
+            throw new IOException("Not a ledger file: " + file);
+        return mapped(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE), file);
+    }
+
+    /**
+     * Creates a new, empty file-backed ledger. An existing empty file is reused, but a
+     * file with content is never overwritten or appended to.
+     *
+     * @param file the ledger file
+     * @return the created ledger
+     * @throws IOException if the file already has content or cannot be created
+     */
+    public static OffHeapLedger create(Path file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() > 0)
+        {
+            channel.close();
+            throw new FileAlreadyExistsException(file.toString(), null, "The file already exists and is not empty");
+        }
+        return mapped(channel, file);
+    }
+
+    private static OffHeapLedger mapped(FileChannel channel, Path file) throws IOException
+    {
+        OffHeapLedger ledger = new OffHeapLedger(channel, file);
+        try
+        {
+            ledger.openHeader();
+        }
+        catch (IOException ex)
+        {
+            channel.close();
+            throw ex;
+        }
+        return ledger;
+    }
+
+    private void openHeader() throws IOException
+    {
+        boolean isNew = channel.size() == 0;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ORDER);
+
+        if (isNew)
+        {
+            header.putLong(0, MAGIC);
+            header.putLong(8, 0);
+            return;
+        }
+
+        if (header.getLong(0) != MAGIC)
+            throw new IOException("Not a ledger file: " + file);
+
+        size = header.getLong(8);
+        for (long mapped = 0; mapped < size; mapped += SEGMENT_ROWS)
+        {
+            segments.add(mapSegment(segments.size()));
+        }
+
+        Path dictionary = categoriesFile();
+        if (Files.exists(dictionary))
+        {
+            try (BufferedReader reader = Files.newBufferedReader(dictionary, StandardCharsets.UTF_8))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    categoryCodes.put(line, categories.size());
+                    categories.add(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends one expense.
+     *
+     * @param id       the expense ID
+     * @param cents    the amount in cents
+     * @param date     the expense date
+     * @param category the category name
+     * @throws IOException if a new segment of a file-backed ledger cannot be mapped
+     */
+    public void append(int id, long cents, LocalDate date, String category) throws IOException
+    {
+        int segmentIndex = (int) (size / SEGMENT_ROWS);
+        if (segmentIndex == segments.size())
+            segments.add(channel == null ? allocateSegment() : mapSegment(segmentIndex));
+
+        ByteBuffer segment = segments.get(segmentIndex);
+        int base = (int) (size % SEGMENT_ROWS) * ROW_BYTES;
+        segment.putInt(base + ID_OFFSET, id);
+        segment.putInt(base + DAY_OFFSET, (int) date.toEpochDay());
+        segment.putLong(base + CENTS_OFFSET, cents);
+        segment.putInt(base + CATEGORY_OFFSET, categoryCode(category));
+        size++;
+
+        if (header != null)
+            header.putLong(8, size);
+    }
+
+    /**
+     * Appends every expense of an expense CSV file (id, name, amount, date, category).
+     * The file is streamed record by record, like the expense file is read, so quoted
+     * descriptions may contain line breaks; records that cannot be parsed are skipped.
+     *
+     * @param csv the expense file
+     * @return the number of records that could not be parsed
+     * @throws IOException if the file cannot be read
+     */
+    public long appendCsv(Path csv) throws IOException
+    {
+        long skipped = 0;
+        try (CsvRecordReader records = new CsvRecordReader(Files.newBufferedReader(csv, StandardCharsets.UTF_8), ','))
+        {
+            records.expectFields(ExpenseCsvReader.FIELDS, ExpenseCsvReader.FIELDS);
+            while (records.next())
+            {
+                if (records.isBlank() && records.getError() == null)
+                    continue;
+
+                List<String> parts = records.fields();
+                if (records.getError() != null || parts.size() < 5)
+                {
+                    skipped++;
+                    continue;
+                }
+
+                try
+                {
+                    append(Integer.parseInt(parts.get(0).trim()),
+                            Math.round(Double.parseDouble(parts.get(2).trim()) * 100),
+                            LocalDate.parse(parts.get(3).trim()),
+                            parts.get(4).trim());
+                }
+                catch (RuntimeException ex)
+                {
+                    skipped++;
+                }
+            }
+        }
+        return skipped;
+    }
+
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the category names, indexed by their code
+     */
+    public List<String> getCategories()
+    {
+        return categories;
+    }
+
+    /**
+     * @return the sum of all amounts, in cents
+     */
+    public long totalCents()
+    {
+        long total = 0;
+        for (int s = 0; s < segments.size(); s++)
+        {
+            ByteBuffer segment = segments.get(s);
+            int rows = rowsIn(s);
+            for (int base = 0, end = rows * ROW_BYTES; base < end; base += ROW_BYTES)
+            {
+                total += segment.getLong(base + CENTS_OFFSET);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Sums and counts the expenses dated between two days, both inclusive.
+     *
+     * @return a two-element array: the number of expenses and their sum in cents
+     */
+    public long[] totalsBetween(LocalDate from, LocalDate to)
+    {
+        int lo = (int) from.toEpochDay();
+        int hi = (int) to.toEpochDay();
+        long count = 0;
+        long cents = 0;
+        for (int s = 0; s < segments.size(); s++)
+        {
+            ByteBuffer segment = segments.get(s);
+            int rows = rowsIn(s);
+            for (int base = 0, end = rows * ROW_BYTES; base < end; base += ROW_BYTES)
+            {
+                int day = segment.getInt(base + DAY_OFFSET);
+                if (day >= lo && day <= hi)
+                {
+                    count++;
+                    cents += segment.getLong(base + CENTS_OFFSET);
+                }
+            }
+        }
+        return new long[] { count, cents };
+    }
+
+    /**
+     * Sums the expenses of one year per month in a single pass.
+     *
+     * @return twelve sums in cents, January first
+     */
+    public long[] monthlyCents(int year)
+    {
+        long[] months = new long[12];
+        int[] monthStarts = new int[13];
+        for (int m = 0; m < 12; m++)
+        {
+            monthStarts[m] = (int) YearMonth.of(year, m + 1).atDay(1).toEpochDay();
+        }
+        monthStarts[12] = (int) LocalDate.of(year + 1, 1, 1).toEpochDay();
+
+        for (int s = 0; s < segments.size(); s++)
+        {
+            ByteBuffer segment = segments.get(s);
+            int rows = rowsIn(s);
+            for (int base = 0, end = rows * ROW_BYTES; base < end; base += ROW_BYTES)
+            {
+                int day = segment.getInt(base + DAY_OFFSET);
+                if (day < monthStarts[0] || day >= monthStarts[12])
+                    continue;
+
+                int m = 0;
+                while (day >= monthStarts[m + 1])
+                {
+                    m++;
+                }
+                months[m] += segment.getLong(base + CENTS_OFFSET);
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Sums the amounts per category in a single pass.
+     *
+     * @return sums in cents, indexed by category code
+     */
+    public long[] categoryCents()
+    {
+        long[] totals = new long[categories.size()];
+        for (int s = 0; s < segments.size(); s++)
+        {
+            ByteBuffer segment = segments.get(s);
+            int rows = rowsIn(s);
+            for (int base = 0, end = rows * ROW_BYTES; base < end; base += ROW_BYTES)
+            {
+                totals[segment.getInt(base + CATEGORY_OFFSET)] += segment.getLong(base + CENTS_OFFSET);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Flushes a file-backed ledger to disk and releases the file. Direct memory is
+     * released by the JVM once the ledger is no longer referenced.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (channel == null)
+            return;
+
+        for (ByteBuffer segment: segments)
+        {
+            ((MappedByteBuffer) segment).force();
+        }
+        header.force();
+
+        try (BufferedWriter writer = Files.newBufferedWriter(categoriesFile(), StandardCharsets.UTF_8))
+        {
+            for (String category: categories)
+            {
+                writer.write(category);
+                writer.newLine();
+            }
+        }
+        channel.close();
+    }
+
+    private int rowsIn(int segmentIndex)
+    {
+        return (int) Math.min(SEGMENT_ROWS, size - (long) segmentIndex * SEGMENT_ROWS);
+    }
+
+    private int categoryCode(String category)
+    {
+        Integer code = categoryCodes.get(category);
+        if (code == null)
+        {
+            code = categories.size();
+            categories.add(category);
+            categoryCodes.put(category, code);
+        }
+        return code;
+    }
+
+    private static ByteBuffer allocateSegment()
+    {
+        return ByteBuffer.allocateDirect((int) SEGMENT_BYTES).order(ORDER);
+    }
+
+    private MappedByteBuffer mapSegment(int segmentIndex) throws IOException
+    {
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE,
+                HEADER_BYTES + segmentIndex * SEGMENT_BYTES, SEGMENT_BYTES);
+        segment.order(ORDER);
+        return segment;
+    }
+
+    private Path categoriesFile()
+    {
+        return file.resolveSibling(file.getFileName() + ".categories");
+    }
+}
@@ -0,0 +1,82 @@
+package storage.offheap;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Fills an off-heap ledger with synthetic rows and reports heap usage and GC activity,
+ * so that runs with different ledger sizes can be compared.
+ * <p>
+ * Usage: {@code java storage.offheap.OffHeapLedgerProbe <rows> [ledger-file]}.
+ * Without a ledger file the rows are kept in direct memory, which needs
+ * {@code -XX:MaxDirectMemorySize} of at least 24 bytes per row.
+ */
+public class OffHeapLedgerProbe
+{
+    private static final String[] CATEGORIES =
+            { "Food", "Transport", "Housing", "Health", "Leisure", "Shopping", "Utilities", "Travel" };
+
+    public static void main(String[] args) throws IOException
+    {
+        long rows = args.length > 0 ? Long.parseLong(args[0].replace("_", "")) : 1_000_000L;
+        Path file = args.length > 1 ? Path.of(args[1]) : null;
+        if (file != null)
+            Files.deleteIfExists(file);
+
+        System.out.println("Rows...............: " + rows);
+        System.out.println("Storage............: " + (file == null ? "direct memory" : "mapped file " + file));
+
+        long[] gcBefore = gcStats();
+        long start = System.nanoTime();
+
+        try (OffHeapLedger ledger = file == null ? OffHeapLedger.inMemory() : OffHeapLedger.create(file))
+        {
+            Random random = new Random(42);
+            int firstDay = (int) LocalDate.of(2000, 1, 1).toEpochDay();
+            for (long i = 0; i < rows; i++)
+            {
+                ledger.append((int) i + 1, 100 + random.nextInt(50_000),
+                        LocalDate.ofEpochDay(firstDay + random.nextInt(9_000)),
+                        CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            }
+            long loadMillis = (System.nanoTime() - start) / 1_000_000;
+
+            long scanStart = System.nanoTime();
+            long total = ledger.totalCents();
+            long[] months = ledger.monthlyCents(2010);
+            long[] categories = ledger.categoryCents();
+            long scanMillis = (System.nanoTime() - scanStart) / 1_000_000;
+
+            long[] gcAfter = gcStats();
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+
+            System.out.println("Load time..........: " + loadMillis + " ms");
+            System.out.println("Scan time (3 scans): " + scanMillis + " ms");
+            System.out.println("Total amount.......: $" + total / 100.0);
+            System.out.println("January 2010.......: $" + months[0] / 100.0);
+            System.out.println("Food...............: $" + categories[0] / 100.0);
+            System.out.println("Heap used after GC.: " + heapUsed / 1024 + " KB");
+            System.out.println("GC collections.....: " + (gcAfter[0] - gcBefore[0]));
+            System.out.println("GC time............: " + (gcAfter[1] - gcBefore[1]) + " ms");
+        }
+    }
+
+    private static long[] gcStats()
+    {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] { count, millis };
+    }
+}
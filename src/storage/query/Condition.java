@@ -0,0 +1,278 @@
+package storage.query;
+
+import model.Expense;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A condition an expense has to meet to be selected by a {@link Query}.
+ * <p>
+ * Date ranges and category sets can be answered from the ledger indexes, so the
+ * {@link QueryEngine} recognizes them and reads only the matching expenses. The other
+ * conditions are checked expense by expense, the most selective and cheapest first.
+ */
+public abstract class Condition implements Predicate<Expense>
+{
+    /**
+     * Selects expenses dated between two dates, inclusive.
+     * Use {@link LocalDate#MIN} or {@link LocalDate#MAX} to leave a side open.
+     */
+    public static Condition dateBetween(LocalDate from, LocalDate to)
+    {
+        return new DateRange(from, to);
+    }
+
+    /**
+     * Selects expenses in any of the given categories, ignoring case.
+     */
+    public static Condition categoryIn(String... categories)
+    {
+        return categoryIn(Arrays.asList(categories));
+    }
+
+    public static Condition categoryIn(Collection<String> categories)
+    {
+        return new CategorySet(categories);
+    }
+
+    /**
+     * Selects expenses whose amount lies between two bounds.
+     * Use infinite bounds to leave a side open.
+     */
+    public static Condition amountBetween(double min, boolean minInclusive, double max, boolean maxInclusive)
+    {
+        return new AmountRange(min, minInclusive, max, maxInclusive);
+    }
+
+    public static Condition amountAbove(double amount)
+    {
+        return amountBetween(amount, false, Double.POSITIVE_INFINITY, false);
+    }
+
+    public static Condition amountBelow(double amount)
+    {
+        return amountBetween(Double.NEGATIVE_INFINITY, false, amount, false);
+    }
+
+    /**
+     * Selects expenses whose description contains the text, ignoring case.
+     */
+    public static Condition nameContains(String text)
+    {
+        return new NameMatch(text, false);
+    }
+
+    /**
+     * Selects expenses whose description equals the text, ignoring case and surrounding whitespace.
+     */
+    public static Condition nameEquals(String text)
+    {
+        return new NameMatch(text, true);
+    }
+
+    /**
+     * The share of expenses this condition is expected to select when nothing better is
+     * known; the query engine estimates indexed conditions from the indexes instead.
+     */
+    abstract double defaultSelectivity();
+
+    /**
+     * The relative cost of checking one expense.
+     */
+    abstract int cost();
+
+    /**
+     * Returns the condition in the query language, such as {@code amount > 50}.
+     */
+    @Override
+    public abstract String toString();
+
+    static class DateRange extends Condition
+    {
+        final LocalDate from;
+        final LocalDate to;
+
+        DateRange(LocalDate from, LocalDate to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        DateRange intersect(DateRange other)
+        {
+            return new DateRange(from.isAfter(other.from) ? from : other.from, to.isBefore(other.to) ? to : other.to);
+        }
+
+        boolean isBounded()
+        {
+            return !from.equals(LocalDate.MIN) && !to.equals(LocalDate.MAX);
+        }
+
+        @Override
+        public boolean test(Expense expense)
+        {
+            LocalDate date = expense.getDateOfExpense();
+            return !date.isBefore(from) && !date.isAfter(to);
+        }
+
+        @Override
+        double defaultSelectivity() {
+            return 0.25;
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+
+        @Override
+        public String toString()
+        {
+            if (to.equals(LocalDate.MAX))
+                return "date >= " + from;
+            if (from.equals(LocalDate.MIN))
+                return "date <= " + to;
+            return from.equals(to) ? "date = " + from : "date between " + from + " and " + to;
+        }
+    }
+
+    static class CategorySet extends Condition
+    {
+        final Set<String> categories = new LinkedHashSet<>();
+
+        CategorySet(Collection<String> categories)
+        {
+            for (String category: categories)
+            {
+                this.categories.add(category.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+
+        CategorySet intersect(CategorySet other)
+        {
+            CategorySet result = new CategorySet(categories);
+            result.categories.retainAll(other.categories);
+            return result;
+        }
+
+        @Override
+        public boolean test(Expense expense)
+        {
+            return categories.contains(expense.getCategory().toLowerCase(Locale.ROOT));
+        }
+
+        @Override
+        double defaultSelectivity() {
+            return 0.1 * categories.size();
+        }
+
+        @Override
+        int cost() {
+            return 2;
+        }
+
+        @Override
+        public String toString()
+        {
+            return categories.size() == 1
+                    ? "category = " + quote(categories.iterator().next())
+                    : "category in (" + String.join(", ", categories.stream().map(Condition::quote).toList()) + ")";
+        }
+    }
+
+    static class AmountRange extends Condition
+    {
+        final double min;
+        final boolean minInclusive;
+        final double max;
+        final boolean maxInclusive;
+
+        AmountRange(double min, boolean minInclusive, double max, boolean maxInclusive)
+        {
+            this.min = min;
+            this.minInclusive = minInclusive;
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+        }
+
+        @Override
+        public boolean test(Expense expense)
+        {
+            double amount = expense.getAmount();
+            return (minInclusive ? amount >= min : amount > min) && (maxInclusive ? amount <= max : amount < max);
+        }
+
+        @Override
+        double defaultSelectivity()
+        {
+            if (min == max)
+                return 0.05;
+            return Double.isInfinite(min) || Double.isInfinite(max) ? 0.33 : 0.25;
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+
+        @Override
+        public String toString()
+        {
+            if (min == max)
+                return "amount = " + min;
+            if (Double.isInfinite(max))
+                return "amount " + (minInclusive ? ">= " : "> ") + min;
+            if (Double.isInfinite(min))
+                return "amount " + (maxInclusive ? "<= " : "< ") + max;
+            if (minInclusive && maxInclusive)
+                return "amount between " + min + " and " + max;
+            return "amount " + (minInclusive ? ">= " : "> ") + min + " and amount " + (maxInclusive ? "<= " : "< ") + max;
+        }
+    }
+
+    static class NameMatch extends Condition
+    {
+        final String text;
+        final boolean exact;
+
+        NameMatch(String text, boolean exact)
+        {
+            this.text = (exact ? text.trim() : text).toLowerCase(Locale.ROOT);
+            this.exact = exact;
+        }
+
+        @Override
+        public boolean test(Expense expense)
+        {
+            String name = expense.getName().toLowerCase(Locale.ROOT);
+            return exact ? name.trim().equals(text) : name.contains(text);
+        }
+
+        @Override
+        double defaultSelectivity() {
+            return exact ? 0.02 : 0.1;
+        }
+
+        @Override
+        int cost() {
+            return exact ? 2 : 4;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "name " + (exact ? "= " : "contains ") + quote(text);
+        }
+    }
+
+    static String quote(String text)
+    {
+        return text.contains("'") ? "\"" + text + "\"" : "'" + text + "'";
+    }
+}
@@ -0,0 +1,182 @@
+package storage.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A query over the expenses: the conditions they have to meet and what to return for
+ * them, either the expenses themselves or aggregates, optionally per group.
+ * <p>
+ * Queries are immutable; every method returns a new query. They can be built in code,
+ * <pre>
+ * Query.aggregate(Query.Aggregate.SUM).where(Condition.categoryIn("Food", "Transport"))
+ *         .where(Condition.amountAbove(50)).groupBy(Query.Grouping.MONTH)
+ * </pre>
+ * or parsed from the query language with {@link #parse(String)}:
+ * <pre>
+ * sum where category in (Food, Transport) and amount &gt; 50 and date in 2025-Q3
+ *     and name contains 'airport' by month order by amount desc limit 10
+ * </pre>
+ * All conditions have to be met. Expenses of several categories are selected with
+ * {@code category in (...)}.
+ */
+public class Query
+{
+    public enum Aggregate
+    {
+        COUNT, SUM, AVG, MIN, MAX
+    }
+
+    public enum Grouping
+    {
+        NONE, CATEGORY, MONTH, YEAR
+    }
+
+    /**
+     * The order of the result. For groups, {@code DATE} orders by the group name and
+     * {@code AMOUNT} by the total amount of the group.
+     */
+    public enum SortKey
+    {
+        DATE, AMOUNT, COUNT
+    }
+
+    private final List<Condition> conditions;
+    private final List<Aggregate> aggregates;
+    private final Grouping grouping;
+    private final SortKey sortKey;
+    private final boolean descending;
+    private final int limit;
+
+    private Query(List<Condition> conditions, List<Aggregate> aggregates, Grouping grouping,
+                  SortKey sortKey, boolean descending, int limit)
+    {
+        this.conditions = List.copyOf(conditions);
+        this.aggregates = List.copyOf(aggregates);
+        this.grouping = grouping;
+        this.sortKey = sortKey;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the matching expenses, ordered by date unless ordered otherwise.
+     */
+    public static Query rows()
+    {
+        return new Query(List.of(), List.of(), Grouping.NONE, SortKey.DATE, false, 0);
+    }
+
+    /**
+     * Returns the given aggregates of the matching expenses.
+     */
+    public static Query aggregate(Aggregate... aggregates)
+    {
+        if (aggregates.length == 0)
+            throw new IllegalArgumentException("At least one aggregate is needed.");
+        return new Query(List.of(), List.of(aggregates), Grouping.NONE, SortKey.DATE, false, 0);
+    }
+
+    /**
+     * Parses a query of the query language.
+     *
+     * @param text the query, such as {@code count, sum where category = Food by month}
+     * @return the parsed query
+     * @throws IllegalArgumentException if the query is not valid, with a message that tells why
+     */
+    public static Query parse(String text)
+    {
+        return new QueryParser(text).parse();
+    }
+
+    /**
+     * Adds a condition the expenses have to meet, in addition to the existing ones.
+     */
+    public Query where(Condition condition)
+    {
+        List<Condition> more = new ArrayList<>(conditions);
+        more.add(condition);
+        return new Query(more, aggregates, grouping, sortKey, descending, limit);
+    }
+
+    /**
+     * Computes the aggregates per category, month or year instead of over all matching expenses.
+     *
+     * @throws IllegalArgumentException if the query returns expenses instead of aggregates
+     */
+    public Query groupBy(Grouping grouping)
+    {
+        if (aggregates.isEmpty() && grouping != Grouping.NONE)
+            throw new IllegalArgumentException("Grouping needs an aggregate such as count or sum.");
+        return new Query(conditions, aggregates, grouping, sortKey, descending, limit);
+    }
+
+    public Query orderBy(SortKey sortKey, boolean descending)
+    {
+        return new Query(conditions, aggregates, grouping, sortKey, descending, limit);
+    }
+
+    /**
+     * Returns at most the given number of expenses or groups; 0 returns all of them.
+     */
+    public Query limit(int limit)
+    {
+        if (limit < 0)
+            throw new IllegalArgumentException("The limit cannot be negative.");
+        return new Query(conditions, aggregates, grouping, sortKey, descending, limit);
+    }
+
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    public List<Aggregate> getAggregates() {
+        return aggregates;
+    }
+
+    public boolean returnsRows() {
+        return aggregates.isEmpty();
+    }
+
+    public Grouping getGrouping() {
+        return grouping;
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the query in the query language.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        if (aggregates.isEmpty())
+            text.append("list");
+        else
+            text.append(String.join(", ", aggregates.stream().map(a -> a.name().toLowerCase(Locale.ROOT)).toList()));
+
+        for (int i = 0; i < conditions.size(); i++)
+        {
+            text.append(i == 0 ? " where " : " and ").append(conditions.get(i));
+        }
+        if (grouping != Grouping.NONE)
+            text.append(" by ").append(grouping.name().toLowerCase(Locale.ROOT));
+        if (sortKey != SortKey.DATE || descending)
+            text.append(" order by ").append(sortKey.name().toLowerCase(Locale.ROOT)).append(descending ? " desc" : "");
+        if (limit > 0)
+            text.append(" limit ").append(limit);
+        return text.toString();
+    }
+}
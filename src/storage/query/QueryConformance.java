@@ -0,0 +1,112 @@
+package storage.query;
+
+import model.Expense;
+import storage.cold.ColdStore;
+import storage.views.CategoryTotalsView;
+import storage.views.ExpenseIndexView;
+import storage.views.LedgerTotalsView;
+import storage.views.MonthlyTotalsView;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs queries over a small ledger and cold archives, in a new temporary directory, and
+ * prints PASS or FAIL per check. Every access path must return the same expenses as
+ * checking each condition on every expense.
+ * <p>
+ * Usage: {@code java storage.query.QueryConformance}. The exit status is 1 if a check failed.
+ */
+public class QueryConformance
+{
+    private int failures;
+
+    public static void main(String[] args) throws IOException
+    {
+        QueryConformance conformance = new QueryConformance();
+        conformance.check();
+
+        System.out.println(conformance.failures == 0 ? "All checks passed." : conformance.failures + " checks failed.");
+        if (conformance.failures > 0)
+            System.exit(1);
+    }
+
+    private void check() throws IOException
+    {
+        Path dir = Files.createTempDirectory("query");
+        ColdStore coldStore = new ColdStore(dir);
+
+        List<Expense> archived = new ArrayList<>();
+        LocalDate day = LocalDate.of(2023, 3, 1);
+        for (int i = 0; i < 10; i++)
+        {
+            archived.add(new Expense(i + 1, "Bus " + i, 2, day.plusDays(i), "Transport"));
+        }
+        archived.add(new Expense(11, "Lunch", 12, day.plusMonths(2), "Food"));
+        coldStore.archive(archived);
+
+        List<Expense> ledger = List.of(
+                new Expense(12, "Dinner", 30, LocalDate.of(2024, 1, 5), "Food"),
+                new Expense(13, "Train", 15, LocalDate.of(2024, 1, 6), "Transport"));
+        ExpenseIndexView index = new ExpenseIndexView();
+        LedgerTotalsView ledgerTotals = new LedgerTotalsView();
+        CategoryTotalsView categoryTotals = new CategoryTotalsView();
+        MonthlyTotalsView monthlyTotals = new MonthlyTotalsView();
+        index.rebuild(ledger);
+        ledgerTotals.rebuild(ledger);
+        categoryTotals.rebuild(ledger);
+        monthlyTotals.rebuild(ledger);
+        QueryEngine engine = new QueryEngine(() -> ledger, index, ledgerTotals, categoryTotals, monthlyTotals,
+                coldStore, List.of());
+
+        List<Expense> all = new ArrayList<>(archived);
+        all.addAll(ledger);
+
+        System.out.println("\narchived rows");
+        checkRows(engine, all, "category = Food and date between 2023-01-01 and 2023-12-31",
+                QueryPlan.Access.CATEGORY_INDEX);
+        checkRows(engine, all, "category = Transport and date between 2023-03-01 and 2023-03-03",
+                QueryPlan.Access.DATE_INDEX);
+        checkRows(engine, all, "category in (Food, Transport) and date between 2023-01-01 and 2024-12-31", null);
+        checkRows(engine, all, "category = food", null);
+        checkRows(engine, all, "date between 2023-05-01 and 2024-01-31", null);
+
+        QueryResult count = engine.execute(Query.parse("count where category = Food and date between 2023-01-01 and 2023-12-31"));
+        expect("counts archived rows of the category only", count.getMatched() == 1);
+    }
+
+    // Runs the query as a listing and compares it with every expense that passes its conditions
+    private void checkRows(QueryEngine engine, List<Expense> all, String conditions, QueryPlan.Access access)
+    {
+        Query query = Query.parse("list where " + conditions);
+        QueryResult result = engine.execute(query);
+        if (access != null)
+            expect("plans " + access + " for " + conditions, result.getPlan().getAccess() == access);
+
+        List<Integer> expected = new ArrayList<>();
+        for (Expense expense: all)
+        {
+            if (query.getConditions().stream().allMatch(condition -> condition.test(expense)))
+                expected.add(expense.getId());
+        }
+        List<Integer> actual = new ArrayList<>();
+        for (Expense expense: result.getRows())
+        {
+            actual.add(expense.getId());
+        }
+        expected.sort(null);
+        actual.sort(null);
+        expect("returns the matching rows for " + conditions, expected.equals(actual));
+    }
+
+    private void expect(String check, boolean passed)
+    {
+        System.out.println((passed ? "  PASS  " : "  FAIL  ") + check);
+        if (!passed)
+            failures++;
+    }
+}
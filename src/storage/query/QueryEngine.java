@@ -0,0 +1,405 @@
+package storage.query;
+
+import model.Expense;
+import model.RecurringExpense;
+import storage.cold.ColdStore;
+import storage.views.CategoryTotalsView;
+import storage.views.ExpenseIndexView;
+import storage.views.LedgerTotalsView;
+import storage.views.MonthlyTotalsView;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Plans and runs {@link Query queries} over the ledger, the cold archives and the
+ * occurrences of the recurring expenses.
+ * <p>
+ * Date ranges and categories are pushed down to the date and category indexes, and to the
+ * archive headers, so only the expenses that can match are read; the index with the fewest
+ * expenses is chosen, and the ledger is scanned only when neither helps. Counts and totals
+ * whose conditions line up with the materialized views are read from the views without
+ * reading any expense. The remaining conditions are checked on each expense read, the most
+ * selective first, and stop at the first one that fails.
+ */
+public class QueryEngine
+{
+    private static final Set<Query.Aggregate> VIEW_AGGREGATES =
+            Set.of(Query.Aggregate.COUNT, Query.Aggregate.SUM, Query.Aggregate.AVG);
+
+    private final Supplier<List<Expense>> ledger;
+    private final ExpenseIndexView index;
+    private final LedgerTotalsView ledgerTotals;
+    private final CategoryTotalsView categoryTotals;
+    private final MonthlyTotalsView monthlyTotals;
+    private final ColdStore coldStore;
+    private final List<RecurringExpense> recurring;
+
+    /**
+     * @param ledger         supplies the current ledger snapshot, for full scans
+     * @param index          the date and category index of the ledger
+     * @param ledgerTotals   the totals of the ledger
+     * @param categoryTotals the totals per category of the ledger
+     * @param monthlyTotals  the totals per month of the ledger
+     * @param coldStore      the archives of the closed years
+     * @param recurring      the recurring expenses, whose occurrences up to today are included
+     */
+    public QueryEngine(Supplier<List<Expense>> ledger, ExpenseIndexView index, LedgerTotalsView ledgerTotals,
+                       CategoryTotalsView categoryTotals, MonthlyTotalsView monthlyTotals, ColdStore coldStore,
+                       List<RecurringExpense> recurring)
+    {
+        this.ledger = ledger;
+        this.index = index;
+        this.ledgerTotals = ledgerTotals;
+        this.categoryTotals = categoryTotals;
+        this.monthlyTotals = monthlyTotals;
+        this.coldStore = coldStore;
+        this.recurring = recurring;
+    }
+
+    /**
+     * Chooses how to answer the query, without running it.
+     */
+    public QueryPlan plan(Query query)
+    {
+        Condition.DateRange dateRange = null;
+        Condition.CategorySet categories = null;
+        List<Condition> others = new ArrayList<>();
+        for (Condition condition: query.getConditions())
+        {
+            if (condition instanceof Condition.DateRange range)
+                dateRange = dateRange == null ? range : dateRange.intersect(range);
+            else if (condition instanceof Condition.CategorySet set)
+                categories = categories == null ? set : categories.intersect(set);
+            else
+                others.add(condition);
+        }
+
+        long total = index.size() + coldStore.getCount();
+        long dateRows = dateRange == null ? total : index.countBetween(dateRange.from, dateRange.to)
+                + coldCountBetween(dateRange.from, dateRange.to);
+        long categoryRows = total;
+        if (categories != null)
+        {
+            categoryRows = 0;
+            for (String category: categories.categories)
+            {
+                categoryRows += index.countInCategory(category) + coldStore.getCategoryCount(category);
+            }
+        }
+
+        Map<QueryPlan.Access, Long> estimates = new EnumMap<>(QueryPlan.Access.class);
+        if (fitsViews(query, dateRange, categories, others))
+            estimates.put(QueryPlan.Access.TOTALS, 0L);
+        if (dateRange != null)
+            estimates.put(QueryPlan.Access.DATE_INDEX, dateRows);
+        if (categories != null)
+            estimates.put(QueryPlan.Access.CATEGORY_INDEX, categoryRows);
+        estimates.put(QueryPlan.Access.FULL_SCAN, total);
+
+        // the first of the cheapest paths in declaration order, so an index wins a tie with the full scan
+        QueryPlan.Access access = null;
+        for (Map.Entry<QueryPlan.Access, Long> estimate: estimates.entrySet())
+        {
+            if (access == null || estimate.getValue() < estimates.get(access))
+                access = estimate.getKey();
+        }
+
+        Map<Condition, Double> selectivity = new LinkedHashMap<>();
+        if (dateRange != null && access != QueryPlan.Access.DATE_INDEX && access != QueryPlan.Access.TOTALS)
+            selectivity.put(dateRange, share(dateRows, total));
+        if (categories != null && access != QueryPlan.Access.CATEGORY_INDEX && access != QueryPlan.Access.TOTALS)
+            selectivity.put(categories, share(categoryRows, total));
+        for (Condition condition: others)
+        {
+            selectivity.put(condition, condition.defaultSelectivity());
+        }
+
+        List<Condition> filters = new ArrayList<>(selectivity.keySet());
+        filters.sort(Comparator.comparingDouble((Condition c) -> selectivity.get(c)).thenComparingInt(Condition::cost));
+        List<Double> ordered = new ArrayList<>();
+        for (Condition filter: filters)
+        {
+            ordered.add(selectivity.get(filter));
+        }
+
+        return new QueryPlan(query, access, dateRange, categories, filters, ordered, total, estimates, recurring.size());
+    }
+
+    /**
+     * Plans and runs the query.
+     * If a cold archive cannot be read, an error message is displayed and its expenses are left out.
+     */
+    public QueryResult execute(Query query)
+    {
+        long start = System.nanoTime();
+        QueryPlan plan = plan(query);
+        Condition[] filters = plan.getFilters().toArray(new Condition[0]);
+        Collector collector = new Collector(query);
+        long examined = 0;
+
+        if (plan.getAccess() == QueryPlan.Access.TOTALS)
+            collector.addTotals(viewCount(plan), viewCents(plan));
+        else
+        {
+            for (Expense expense: ledgerCandidates(plan))
+            {
+                examined++;
+                collector.offer(expense, filters);
+            }
+            for (Expense expense: coldCandidates(plan))
+            {
+                examined++;
+                collector.offer(expense, filters);
+            }
+        }
+
+        LocalDate from = plan.dateRange == null ? LocalDate.MIN : plan.dateRange.from;
+        LocalDate today = LocalDate.now();
+        LocalDate to = plan.dateRange == null || plan.dateRange.to.isAfter(today) ? today : plan.dateRange.to;
+        for (RecurringExpense rule: recurring)
+        {
+            if (plan.categories != null && !plan.categories.categories.contains(rule.getCategory().toLowerCase(Locale.ROOT)))
+                continue;
+            for (Expense occurrence: rule.occurrencesBetween(from, to))
+            {
+                examined++;
+                collector.offer(occurrence, filters);
+            }
+        }
+
+        return collector.result(plan, examined, System.nanoTime() - start);
+    }
+
+    private static boolean fitsViews(Query query, Condition.DateRange dateRange, Condition.CategorySet categories,
+                                     List<Condition> others)
+    {
+        if (query.returnsRows() || query.getGrouping() != Query.Grouping.NONE || !others.isEmpty()
+                || !VIEW_AGGREGATES.containsAll(query.getAggregates()))
+            return false;
+        if (dateRange == null)
+            return true;
+        return categories == null && dateRange.isBounded() && dateRange.from.getDayOfMonth() == 1
+                && dateRange.to.equals(YearMonth.from(dateRange.to).atEndOfMonth());
+    }
+
+    private long viewCount(QueryPlan plan)
+    {
+        long count = 0;
+        if (plan.dateRange != null)
+        {
+            for (YearMonth month = YearMonth.from(plan.dateRange.from); !month.isAfter(YearMonth.from(plan.dateRange.to)); month = month.plusMonths(1))
+            {
+                count += monthlyTotals.getCount(month) + coldStore.getCount(month);
+            }
+        }
+        else if (plan.categories != null)
+        {
+            for (String category: plan.categories.categories)
+            {
+                count += categoryTotals.getCount(category) + coldStore.getCategoryCount(category);
+            }
+        }
+        else
+            count = ledgerTotals.getCount() + coldStore.getCount();
+        return count;
+    }
+
+    private long viewCents(QueryPlan plan)
+    {
+        double amount = 0;
+        if (plan.dateRange != null)
+        {
+            for (YearMonth month = YearMonth.from(plan.dateRange.from); !month.isAfter(YearMonth.from(plan.dateRange.to)); month = month.plusMonths(1))
+            {
+                amount += monthlyTotals.getAmount(month) + coldStore.getAmount(month);
+            }
+        }
+        else if (plan.categories != null)
+        {
+            for (String category: plan.categories.categories)
+            {
+                amount += categoryTotals.getAmount(category) + coldStore.getCategoryAmount(category);
+            }
+        }
+        else
+            amount = ledgerTotals.getAmount() + coldStore.getAmount();
+        return Math.round(amount * 100);
+    }
+
+    private List<Expense> ledgerCandidates(QueryPlan plan)
+    {
+        switch (plan.getAccess())
+        {
+            case DATE_INDEX:
+                return index.between(plan.dateRange.from, plan.dateRange.to);
+            case CATEGORY_INDEX:
+                List<Expense> result = new ArrayList<>();
+                for (String category: plan.categories.categories)
+                {
+                    result.addAll(index.inCategory(category));
+                }
+                return result;
+            default:
+                return ledger.get();
+        }
+    }
+
+    // The archives are always narrowed by their headers: to the years of the date range, or else to the
+    // years that have expenses in the categories. The conditions used here stay filters unless the plan uses the same index,
+    // so when the plan reads the category index but the archives are read by date, the categories are checked here.
+    private List<Expense> coldCandidates(QueryPlan plan)
+    {
+        List<Expense> result = new ArrayList<>();
+        if (coldStore.isEmpty())
+            return result;
+
+        try
+        {
+            if (plan.dateRange != null)
+            {
+                List<Expense> between = coldStore.expensesBetween(plan.dateRange.from, plan.dateRange.to);
+                if (plan.getAccess() != QueryPlan.Access.CATEGORY_INDEX)
+                    return between;
+                for (Expense expense: between)
+                {
+                    if (plan.categories.test(expense))
+                        result.add(expense);
+                }
+                return result;
+            }
+            if (plan.categories != null)
+            {
+                for (String category: plan.categories.categories)
+                {
+                    result.addAll(coldStore.expensesInCategory(category));
+                }
+                return result;
+            }
+            return coldStore.expenses();
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Cannot read the cold archives: " + ex.getMessage());
+            return result;
+        }
+    }
+
+    // Expenses in the months of the range that the archive headers count
+    private long coldCountBetween(LocalDate from, LocalDate to)
+    {
+        long count = 0;
+        for (int year: coldStore.getYears())
+        {
+            if (year < from.getYear() || year > to.getYear())
+                continue;
+            for (int month = 1; month <= 12; month++)
+            {
+                YearMonth yearMonth = YearMonth.of(year, month);
+                if (!yearMonth.atEndOfMonth().isBefore(from) && !yearMonth.atDay(1).isAfter(to))
+                    count += coldStore.getCount(yearMonth);
+            }
+        }
+        return count;
+    }
+
+    private static double share(long rows, long total)
+    {
+        return total == 0 ? 0 : (double) rows / total;
+    }
+
+    /**
+     * Collects the matching expenses, or their aggregates per group, in the order the query asks for.
+     */
+    private static class Collector
+    {
+        private final Query query;
+        private final Comparator<Expense> order;
+        private final TopN<Expense> top;
+        private final List<Expense> rows = new ArrayList<>();
+        private final Map<String, QueryResult.Group> groups = new LinkedHashMap<>();
+        private long matched;
+
+        Collector(Query query)
+        {
+            this.query = query;
+            Comparator<Expense> byKey = query.getSortKey() == Query.SortKey.AMOUNT
+                    ? Comparator.comparingDouble(Expense::getAmount)
+                    : Comparator.comparing(Expense::getDateOfExpense);
+            byKey = byKey.thenComparingInt(Expense::getId);
+            this.order = query.isDescending() ? byKey.reversed() : byKey;
+            // the heap keeps the largest items, so it ranks by the reversed order to keep the first ones
+            this.top = query.returnsRows() && query.getLimit() > 0 ? new TopN<>(query.getLimit(), order.reversed()) : null;
+            if (query.getGrouping() == Query.Grouping.NONE)
+                groups.put("all", new QueryResult.Group("all"));
+        }
+
+        void offer(Expense expense, Condition[] filters)
+        {
+            for (Condition filter: filters)
+            {
+                if (!filter.test(expense))
+                    return;
+            }
+
+            matched++;
+            if (top != null)
+                top.offer(expense);
+            else if (query.returnsRows())
+                rows.add(expense);
+            else
+                group(expense).add(expense.getAmount());
+        }
+
+        void addTotals(long count, long cents)
+        {
+            matched += count;
+            groups.put("all", new QueryResult.Group("all", count, cents));
+        }
+
+        QueryResult result(QueryPlan plan, long examined, long elapsedNanos)
+        {
+            if (query.returnsRows())
+            {
+                List<Expense> ordered = top != null ? top.toList() : rows;
+                if (top == null)
+                    ordered.sort(order);
+                return new QueryResult(plan, ordered, List.of(), examined, matched, elapsedNanos);
+            }
+
+            List<QueryResult.Group> ordered = new ArrayList<>(groups.values());
+            Comparator<QueryResult.Group> byKey = switch (query.getSortKey())
+            {
+                case AMOUNT -> Comparator.comparingLong(QueryResult.Group::getCents);
+                case COUNT -> Comparator.comparingLong(QueryResult.Group::getCount);
+                case DATE -> Comparator.comparing(g -> g.getName().toLowerCase(Locale.ROOT));
+            };
+            ordered.sort(query.isDescending() ? byKey.reversed() : byKey);
+            if (query.getLimit() > 0 && ordered.size() > query.getLimit())
+                ordered = ordered.subList(0, query.getLimit());
+            return new QueryResult(plan, List.of(), ordered, examined, matched, elapsedNanos);
+        }
+
+        private QueryResult.Group group(Expense expense)
+        {
+            String name = switch (query.getGrouping())
+            {
+                case CATEGORY -> expense.getCategory();
+                case MONTH -> YearMonth.from(expense.getDateOfExpense()).toString();
+                case YEAR -> String.valueOf(expense.getDateOfExpense().getYear());
+                case NONE -> "all";
+            };
+            return groups.computeIfAbsent(name.toLowerCase(Locale.ROOT), k -> new QueryResult.Group(name));
+        }
+    }
+}
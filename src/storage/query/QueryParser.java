@@ -0,0 +1,370 @@
+package storage.query;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses the query language of {@link Query}:
+ * <pre>
+ * query     = [output] ["where" condition {"and" condition}] ["by" ("category" | "month" | "year")]
+ *             ["order" "by" ("date" | "amount" | "count") ["asc" | "desc"]] ["limit" number]
+ * output    = "list" | aggregate {"," aggregate}
+ * aggregate = "count" | "sum" | "avg" | "min" | "max"
+ * condition = "category" ("=" text | "in" "(" text {"," text} ")")
+ *           | "amount" (operator number | "between" number "and" number)
+ *           | "date" (operator date | "between" date "and" date | "in" period)
+ *           | "name" ("contains" | "=") text
+ * operator  = "=" | "&lt;" | "&lt;=" | "&gt;" | "&gt;="
+ * period    = yyyy | yyyy-mm | yyyy-Qn
+ * </pre>
+ * Keywords ignore case. Texts with spaces or commas are quoted with ' or ".
+ */
+class QueryParser
+{
+    private final String text;
+    private final List<String> tokens = new ArrayList<>();
+    private final List<Boolean> quoted = new ArrayList<>();
+    private int position;
+
+    QueryParser(String text)
+    {
+        this.text = text;
+        tokenize();
+    }
+
+    Query parse()
+    {
+        Query query = Query.rows();
+        if (acceptKeyword("list"))
+        {
+            // the default output
+        }
+        else if (isAggregate(peek()))
+        {
+            List<Query.Aggregate> aggregates = new ArrayList<>();
+            do
+            {
+                aggregates.add(choice("count, sum, avg, min or max", Query.Aggregate.values()));
+            }
+            while (accept(","));
+            query = Query.aggregate(aggregates.toArray(new Query.Aggregate[0]));
+        }
+
+        if (acceptKeyword("where"))
+        {
+            do
+            {
+                query = query.where(condition());
+            }
+            while (acceptKeyword("and"));
+        }
+
+        boolean grouped = acceptKeyword("by");
+        if (!grouped && acceptKeyword("group"))
+        {
+            expectKeyword("by");
+            grouped = true;
+        }
+        if (grouped)
+            query = query.groupBy(choice("category, month or year", Query.Grouping.CATEGORY, Query.Grouping.MONTH, Query.Grouping.YEAR));
+
+        if (acceptKeyword("order"))
+        {
+            expectKeyword("by");
+            Query.SortKey key = choice("date, amount or count", Query.SortKey.DATE, Query.SortKey.AMOUNT, Query.SortKey.COUNT);
+            boolean descending = acceptKeyword("desc");
+            if (!descending)
+                acceptKeyword("asc");
+            query = query.orderBy(key, descending);
+        }
+
+        if (acceptKeyword("limit"))
+            query = query.limit(integer());
+
+        if (peek() != null)
+            throw error("Unexpected input");
+        return query;
+    }
+
+    private Condition condition()
+    {
+        String field = next("category, amount, date or name").toLowerCase(Locale.ROOT);
+        switch (field)
+        {
+            case "category":
+                if (accept("="))
+                    return Condition.categoryIn(text("a category"));
+                expectKeyword("in");
+                expect("(");
+                List<String> categories = new ArrayList<>();
+                do
+                {
+                    categories.add(text("a category"));
+                }
+                while (accept(","));
+                expect(")");
+                return Condition.categoryIn(categories);
+
+            case "amount":
+                if (acceptKeyword("between"))
+                {
+                    double min = number();
+                    expectKeyword("and");
+                    return Condition.amountBetween(min, true, number(), true);
+                }
+                String operator = operator();
+                double amount = number();
+                return switch (operator)
+                {
+                    case "=" -> Condition.amountBetween(amount, true, amount, true);
+                    case "<" -> Condition.amountBelow(amount);
+                    case "<=" -> Condition.amountBetween(Double.NEGATIVE_INFINITY, false, amount, true);
+                    case ">" -> Condition.amountAbove(amount);
+                    default -> Condition.amountBetween(amount, true, Double.POSITIVE_INFINITY, false);
+                };
+
+            case "date":
+                if (acceptKeyword("between"))
+                {
+                    LocalDate from = date();
+                    expectKeyword("and");
+                    return Condition.dateBetween(from, date());
+                }
+                if (acceptKeyword("in"))
+                    return period();
+                String comparison = operator();
+                LocalDate date = date();
+                return switch (comparison)
+                {
+                    case "=" -> Condition.dateBetween(date, date);
+                    case "<" -> Condition.dateBetween(LocalDate.MIN, date.minusDays(1));
+                    case "<=" -> Condition.dateBetween(LocalDate.MIN, date);
+                    case ">" -> Condition.dateBetween(date.plusDays(1), LocalDate.MAX);
+                    default -> Condition.dateBetween(date, LocalDate.MAX);
+                };
+
+            case "name":
+                if (acceptKeyword("contains"))
+                    return Condition.nameContains(text("a text"));
+                expect("=");
+                return Condition.nameEquals(text("a text"));
+
+            default:
+                throw new IllegalArgumentException("Unknown field '" + field + "', expected category, amount, date or name.");
+        }
+    }
+
+    // A year (2025), a month (2025-07) or a quarter (2025-Q3)
+    private Condition period()
+    {
+        String period = next("a year, month or quarter").toUpperCase(Locale.ROOT);
+        try
+        {
+            if (period.matches("\\d{4}"))
+            {
+                Year year = Year.parse(period);
+                return Condition.dateBetween(year.atDay(1), year.atMonth(12).atEndOfMonth());
+            }
+            if (period.matches("\\d{4}-Q[1-4]"))
+            {
+                int quarter = period.charAt(6) - '0';
+                YearMonth first = YearMonth.of(Integer.parseInt(period.substring(0, 4)), quarter * 3 - 2);
+                return Condition.dateBetween(first.atDay(1), first.plusMonths(2).atEndOfMonth());
+            }
+            YearMonth month = YearMonth.parse(period);
+            return Condition.dateBetween(month.atDay(1), month.atEndOfMonth());
+        }
+        catch (DateTimeParseException ex)
+        {
+            throw new IllegalArgumentException("Invalid period '" + period + "', expected yyyy, yyyy-mm or yyyy-Qn.");
+        }
+    }
+
+    private LocalDate date()
+    {
+        String value = next("a date");
+        try
+        {
+            return LocalDate.parse(value);
+        }
+        catch (DateTimeParseException ex)
+        {
+            throw new IllegalArgumentException("Invalid date '" + value + "', expected yyyy-mm-dd.");
+        }
+    }
+
+    private double number()
+    {
+        String value = next("a number");
+        try
+        {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("Invalid number '" + value + "'.");
+        }
+    }
+
+    private int integer()
+    {
+        String value = next("a number");
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("Invalid number '" + value + "'.");
+        }
+    }
+
+    private String operator()
+    {
+        String value = peek();
+        if (value != null && !quoted.get(position) && List.of("=", "<", "<=", ">", ">=").contains(value))
+        {
+            position++;
+            return value;
+        }
+        throw error("Expected =, <, <=, > or >=");
+    }
+
+    private String text(String expected)
+    {
+        String value = next(expected);
+        if (!quoted.get(position - 1) && List.of("(", ")", ",", "=", "<", "<=", ">", ">=").contains(value))
+        {
+            position--;
+            throw error("Expected " + expected);
+        }
+        return value;
+    }
+
+    @SafeVarargs
+    private <E extends Enum<E>> E choice(String expected, E... values)
+    {
+        String value = next(expected);
+        for (E option: values)
+        {
+            if (option.name().equalsIgnoreCase(value))
+                return option;
+        }
+        position--;
+        throw error("Expected " + expected);
+    }
+
+    private boolean isAggregate(String token)
+    {
+        if (token == null)
+            return false;
+        for (Query.Aggregate aggregate: Query.Aggregate.values())
+        {
+            if (aggregate.name().equalsIgnoreCase(token))
+                return true;
+        }
+        return false;
+    }
+
+    private String peek()
+    {
+        return position < tokens.size() ? tokens.get(position) : null;
+    }
+
+    private String next(String expected)
+    {
+        if (position >= tokens.size())
+            throw error("Expected " + expected);
+        return tokens.get(position++);
+    }
+
+    private boolean accept(String symbol)
+    {
+        if (symbol.equals(peek()) && !quoted.get(position))
+        {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptKeyword(String keyword)
+    {
+        if (keyword.equalsIgnoreCase(peek()) && !quoted.get(position))
+        {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String symbol)
+    {
+        if (!accept(symbol))
+            throw error("Expected '" + symbol + "'");
+    }
+
+    private void expectKeyword(String keyword)
+    {
+        if (!acceptKeyword(keyword))
+            throw error("Expected '" + keyword + "'");
+    }
+
+    private IllegalArgumentException error(String message)
+    {
+        String at = position < tokens.size() ? " at '" + tokens.get(position) + "'" : " at the end of the query";
+        return new IllegalArgumentException(message + at + ".");
+    }
+
+    private void tokenize()
+    {
+        int i = 0;
+        while (i < text.length())
+        {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c))
+            {
+                i++;
+            }
+            else if (c == '\'' || c == '"')
+            {
+                int end = text.indexOf(c, i + 1);
+                if (end < 0)
+                    throw new IllegalArgumentException("Missing closing " + c + " in the query.");
+                add(text.substring(i + 1, end), true);
+                i = end + 1;
+            }
+            else if (c == '<' || c == '>')
+            {
+                boolean orEqual = i + 1 < text.length() && text.charAt(i + 1) == '=';
+                add(orEqual ? c + "=" : String.valueOf(c), false);
+                i += orEqual ? 2 : 1;
+            }
+            else if (c == '(' || c == ')' || c == ',' || c == '=')
+            {
+                add(String.valueOf(c), false);
+                i++;
+            }
+            else
+            {
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i)) && "'\"<>(),=".indexOf(text.charAt(i)) < 0)
+                {
+                    i++;
+                }
+                add(text.substring(start, i), false);
+            }
+        }
+    }
+
+    private void add(String token, boolean isQuoted)
+    {
+        tokens.add(token);
+        quoted.add(isQuoted);
+    }
+}
@@ -0,0 +1,137 @@
+package storage.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * How the {@link QueryEngine} answers a query: which expenses it reads and in which order
+ * it checks the remaining conditions on them.
+ * <p>
+ * The access path is the cheapest of the ones that fit the query, estimated from the index
+ * and view sizes and the cold archive headers. {@link #explain()} shows the choice and the
+ * estimates of the paths that were not taken, so the plan can be compared with the number
+ * of expenses the query really examined.
+ */
+public class QueryPlan
+{
+    public enum Access
+    {
+        /** Counts and totals read from the materialized views and archive headers, without reading expenses. */
+        TOTALS,
+        /** The expenses of the date range, read from the date index. */
+        DATE_INDEX,
+        /** The expenses of the categories, read from the category index. */
+        CATEGORY_INDEX,
+        /** Every expense. */
+        FULL_SCAN
+    }
+
+    private final Query query;
+    private final Access access;
+    final Condition.DateRange dateRange;
+    final Condition.CategorySet categories;
+    private final List<Condition> filters;
+    private final List<Double> selectivities;
+    private final long estimatedRows;
+    private final long totalRows;
+    private final Map<Access, Long> estimates;
+    private final int recurringRules;
+
+    QueryPlan(Query query, Access access, Condition.DateRange dateRange, Condition.CategorySet categories,
+              List<Condition> filters, List<Double> selectivities, long totalRows, Map<Access, Long> estimates,
+              int recurringRules)
+    {
+        this.query = query;
+        this.access = access;
+        this.dateRange = dateRange;
+        this.categories = categories;
+        this.filters = List.copyOf(filters);
+        this.selectivities = List.copyOf(selectivities);
+        this.estimatedRows = estimates.get(access);
+        this.totalRows = totalRows;
+        this.estimates = estimates;
+        this.recurringRules = recurringRules;
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    public Access getAccess() {
+        return access;
+    }
+
+    /**
+     * Returns the conditions checked on every expense read, in the order they are checked.
+     */
+    public List<Condition> getFilters() {
+        return filters;
+    }
+
+    /**
+     * Returns the estimated number of stored expenses the access path reads.
+     */
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * Describes the plan in a few lines of text.
+     */
+    public String explain()
+    {
+        List<String> lines = new ArrayList<>();
+        lines.add("Query:   " + query);
+        lines.add("Access:  " + describe(access) + ", about " + estimatedRows + " of " + totalRows + " stored expenses");
+
+        List<String> others = new ArrayList<>();
+        for (Map.Entry<Access, Long> estimate: estimates.entrySet())
+        {
+            if (estimate.getKey() != access)
+                others.add(describe(estimate.getKey()) + " about " + estimate.getValue());
+        }
+        if (!others.isEmpty())
+            lines.add("         not taken: " + String.join("; ", others));
+
+        if (recurringRules > 0)
+            lines.add("         plus the occurrences of " + recurringRules + " recurring expenses"
+                    + (dateRange == null ? " up to today" : " in the date range"));
+
+        if (filters.isEmpty())
+            lines.add("Filters: none");
+        for (int i = 0; i < filters.size(); i++)
+        {
+            lines.add((i == 0 ? "Filters: " : "         ") + (i + 1) + ". " + filters.get(i)
+                    + String.format(Locale.ROOT, " (selectivity %.3f)", selectivities.get(i)));
+        }
+
+        String output = query.returnsRows() ? "expenses"
+                : String.join(", ", query.getAggregates().stream().map(a -> a.name().toLowerCase(Locale.ROOT)).toList());
+        if (query.getGrouping() != Query.Grouping.NONE)
+            output += " by " + query.getGrouping().name().toLowerCase(Locale.ROOT);
+        output += ", ordered by " + query.getSortKey().name().toLowerCase(Locale.ROOT) + (query.isDescending() ? " desc" : "");
+        if (query.getLimit() > 0)
+            output += query.returnsRows()
+                    ? ", first " + query.getLimit() + " kept in a bounded heap instead of sorting"
+                    : ", first " + query.getLimit() + " groups";
+        lines.add("Output:  " + output);
+        return String.join(System.lineSeparator(), lines);
+    }
+
+    private String describe(Access path)
+    {
+        return switch (path)
+        {
+            case TOTALS -> "totals from the materialized views and archive headers";
+            case DATE_INDEX -> "date index (" + dateRange + ")";
+            case CATEGORY_INDEX -> "category index (" + categories + ")";
+            case FULL_SCAN -> "full scan";
+        };
+    }
+}
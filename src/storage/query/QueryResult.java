@@ -0,0 +1,121 @@
+package storage.query;
+
+import model.Expense;
+
+import java.util.List;
+
+/**
+ * The answer to a {@link Query}: the matching expenses or the aggregates per group, the
+ * plan that was used, and how much work the query did.
+ */
+public class QueryResult
+{
+    private final QueryPlan plan;
+    private final List<Expense> rows;
+    private final List<Group> groups;
+    private final long examined;
+    private final long matched;
+    private final long elapsedNanos;
+
+    QueryResult(QueryPlan plan, List<Expense> rows, List<Group> groups, long examined, long matched, long elapsedNanos)
+    {
+        this.plan = plan;
+        this.rows = List.copyOf(rows);
+        this.groups = List.copyOf(groups);
+        this.examined = examined;
+        this.matched = matched;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public QueryPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the matching expenses of a query that returns rows, in the requested order.
+     */
+    public List<Expense> getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the groups of a query that returns aggregates; without grouping there is one group.
+     */
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Returns the number of expenses the conditions were checked on.
+     */
+    public long getExamined() {
+        return examined;
+    }
+
+    /**
+     * Returns the number of expenses that met all conditions, before the limit was applied.
+     */
+    public long getMatched() {
+        return matched;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * The number, total, smallest and largest amount of the matching expenses of one group.
+     */
+    public static class Group
+    {
+        private final String name;
+        private long count;
+        private long cents;
+        private double min;
+        private double max;
+
+        Group(String name)
+        {
+            this.name = name;
+        }
+
+        Group(String name, long count, long cents)
+        {
+            this.name = name;
+            this.count = count;
+            this.cents = cents;
+        }
+
+        void add(double amount)
+        {
+            min = count == 0 ? amount : Math.min(min, amount);
+            max = count == 0 ? amount : Math.max(max, amount);
+            count++;
+            cents += Math.round(amount * 100);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getCents() {
+            return cents;
+        }
+
+        public double getValue(Query.Aggregate aggregate)
+        {
+            return switch (aggregate)
+            {
+                case COUNT -> count;
+                case SUM -> cents / 100.0;
+                case AVG -> count == 0 ? 0 : Math.round((double) cents / count) / 100.0;
+                case MIN -> min;
+                case MAX -> max;
+            };
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package storage.query;
+
+import model.Expense;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Ranking queries over a ledger snapshot, computed in one streaming pass.
+ * <p>
+ * Large snapshots are split into chunks that are scanned in parallel. Each chunk fills its
+ * own bounded heap (or its own group totals), and the partial results are merged at the end,
+ * so no thread shares mutable state and the snapshot is never sorted or copied. Several
+ * sources, such as the ledger and the recurring occurrences, are ranked the same way
+ * and merged, so they need not be copied into one list either.
+ */
+public class Rankings
+{
+    private static final int CHUNK_SIZE = 16_384;
+
+    /** Orders expenses by amount, then by ID so that ties are ranked deterministically. */
+    private static final Comparator<Expense> BY_AMOUNT =
+            Comparator.comparingDouble(Expense::getAmount).thenComparing(Expense::getId, Comparator.reverseOrder());
+
+    private Rankings()
+    {
+    }
+
+    /**
+     * Returns the {@code n} largest expenses that match the filter, largest first.
+     *
+     * @param expenses the expenses to rank
+     * @param n        the number of expenses to return
+     * @param filter   the condition an expense has to meet to be ranked
+     * @return the largest matching expenses
+     */
+    public static List<Expense> topExpenses(List<Expense> expenses, int n, Predicate<Expense> filter)
+    {
+        return topExpensesOf(List.of(expenses), n, filter);
+    }
+
+    /**
+     * Returns the {@code n} largest expenses of several sources that match the filter, largest first.
+     *
+     * @param sources the lists of expenses to rank
+     * @param n       the number of expenses to return
+     * @param filter  the condition an expense has to meet to be ranked
+     * @return the largest matching expenses
+     */
+    public static List<Expense> topExpensesOf(List<List<Expense>> sources, int n, Predicate<Expense> filter)
+    {
+        TopN<Expense> top = new TopN<>(n, BY_AMOUNT);
+        for (List<Expense> expenses: sources)
+        {
+            top.merge(heap(expenses, n, filter));
+        }
+        return top.toList();
+    }
+
+    private static TopN<Expense> heap(List<Expense> expenses, int n, Predicate<Expense> filter)
+    {
+        return chunks(expenses)
+                .mapToObj(c ->
+                {
+                    TopN<Expense> top = new TopN<>(n, BY_AMOUNT);
+                    int end = Math.min(expenses.size(), c + CHUNK_SIZE);
+                    for (int i = c; i < end; i++)
+                    {
+                        Expense expense = expenses.get(i);
+                        if (filter.test(expense))
+                            top.offer(expense);
+                    }
+                    return top;
+                })
+                .reduce(TopN::merge)
+                .orElse(new TopN<>(n, BY_AMOUNT));
+    }
+
+    /**
+     * Returns the {@code n} categories with the highest total amount among the matching expenses.
+     * Categories are grouped case-insensitively.
+     *
+     * @return category totals, largest first
+     */
+    public static List<GroupTotal> topCategories(List<Expense> expenses, int n, Predicate<Expense> filter)
+    {
+        return topCategoriesOf(List.of(expenses), n, filter);
+    }
+
+    /**
+     * Returns the {@code n} categories with the highest total amount among the matching
+     * expenses of several sources.
+     *
+     * @return category totals, largest first
+     */
+    public static List<GroupTotal> topCategoriesOf(List<List<Expense>> sources, int n, Predicate<Expense> filter)
+    {
+        return topGroups(sources, n, filter, Expense::getCategory);
+    }
+
+    /**
+     * Returns the {@code n} descriptions with the highest total amount among the matching expenses.
+     * Descriptions are grouped ignoring case and repeated whitespace.
+     *
+     * @return description totals, largest first
+     */
+    public static List<GroupTotal> topDescriptions(List<Expense> expenses, int n, Predicate<Expense> filter)
+    {
+        return topDescriptionsOf(List.of(expenses), n, filter);
+    }
+
+    /**
+     * Returns the {@code n} descriptions with the highest total amount among the matching
+     * expenses of several sources.
+     *
+     * @return description totals, largest first
+     */
+    public static List<GroupTotal> topDescriptionsOf(List<List<Expense>> sources, int n, Predicate<Expense> filter)
+    {
+        return topGroups(sources, n, filter, e -> e.getName().trim().replaceAll("\\s+", " "));
+    }
+
+    private static List<GroupTotal> topGroups(List<List<Expense>> sources, int n, Predicate<Expense> filter,
+                                              Function<Expense, String> name)
+    {
+        Map<String, GroupTotal> totals = new HashMap<>();
+        for (List<Expense> expenses: sources)
+        {
+            mergeTotals(totals, groupTotals(expenses, filter, name));
+        }
+
+        TopN<GroupTotal> top = new TopN<>(n, Comparator.comparingLong(GroupTotal::getCents)
+                .thenComparing(GroupTotal::getName, Comparator.reverseOrder()));
+        for (GroupTotal total: totals.values())
+        {
+            top.offer(total);
+        }
+        return top.toList();
+    }
+
+    private static Map<String, GroupTotal> groupTotals(List<Expense> expenses, Predicate<Expense> filter,
+                                                       Function<Expense, String> name)
+    {
+        return chunks(expenses)
+                .mapToObj(c ->
+                {
+                    Map<String, GroupTotal> partial = new HashMap<>();
+                    int end = Math.min(expenses.size(), c + CHUNK_SIZE);
+                    for (int i = c; i < end; i++)
+                    {
+                        Expense expense = expenses.get(i);
+                        if (filter.test(expense))
+                        {
+                            String display = name.apply(expense);
+                            partial.computeIfAbsent(display.toLowerCase(Locale.ROOT), k -> new GroupTotal(display))
+                                    .add(expense.getAmount());
+                        }
+                    }
+                    return partial;
+                })
+                .reduce(Rankings::mergeTotals)
+                .orElse(new HashMap<>());
+    }
+
+    private static Map<String, GroupTotal> mergeTotals(Map<String, GroupTotal> into, Map<String, GroupTotal> from)
+    {
+        for (Map.Entry<String, GroupTotal> entry: from.entrySet())
+        {
+            GroupTotal existing = into.putIfAbsent(entry.getKey(), entry.getValue());
+            if (existing != null)
+                existing.merge(entry.getValue());
+        }
+        return into;
+    }
+
+    // Start indexes of the chunks; a single chunk is scanned sequentially
+    private static IntStream chunks(List<Expense> expenses)
+    {
+        int chunkCount = (expenses.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream starts = IntStream.range(0, chunkCount).map(c -> c * CHUNK_SIZE);
+        return chunkCount > 1 ? starts.parallel() : starts;
+    }
+
+    /**
+     * The number of expenses and their total amount of one category or description.
+     */
+    public static class GroupTotal
+    {
+        private final String name;
+        private long count;
+        private long cents;
+
+        GroupTotal(String name)
+        {
+            this.name = name;
+        }
+
+        void add(double amount)
+        {
+            count++;
+            cents += Math.round(amount * 100);
+        }
+
+        void merge(GroupTotal other)
+        {
+            count += other.count;
+            cents += other.cents;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getCents() {
+            return cents;
+        }
+
+        public double getAmount() {
+            return cents / 100.0;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package storage.query;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the {@code n} largest items offered to it.
+ * <p>
+ * The items are held in a min-heap of at most {@code n} elements whose head is the
+ * smallest item kept so far, so each offer costs O(log n) and a stream of m items is
+ * ranked in O(m log n) time and O(n) memory, without sorting or copying the stream.
+ * Heaps filled by different threads can be combined with {@link #merge(TopN)}.
+ *
+ * @param <T> the item type
+ */
+public class TopN<T>
+{
+    private final int n;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    /**
+     * @param n     the number of items to keep
+     * @param order the ranking order; the largest items according to it are kept
+     */
+    public TopN(int n, Comparator<? super T> order)
+    {
+        this.n = n;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.max(1, n + 1), order);
+    }
+
+    public void offer(T item)
+    {
+        if (n <= 0)
+            return;
+
+        if (heap.size() < n)
+        {
+            heap.offer(item);
+        }
+        else if (order.compare(item, heap.peek()) > 0)
+        {
+            heap.poll();
+            heap.offer(item);
+        }
+    }
+
+    /**
+     * Adds the items kept by another heap to this one.
+     *
+     * @param other the heap to merge
+     * @return this heap
+     */
+    public TopN<T> merge(TopN<T> other)
+    {
+        for (T item: other.heap)
+        {
+            offer(item);
+        }
+        return this;
+    }
+
+    /**
+     * @return the kept items, largest first
+     */
+    public List<T> toList()
+    {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(order.reversed());
+        return result;
+    }
+}
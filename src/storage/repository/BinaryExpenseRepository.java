@@ -0,0 +1,472 @@
+package storage.repository;
+
+import model.Expense;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.stream.Stream;
+
+/**
+ * Stores the expenses in a compact binary log, {@code expenses.bin}, and the budget in
+ * {@code budget.bin}.
+ * <p>
+ * After an 8-byte header (magic and version) the log holds one record per change:
+ * <pre>
+ *   byte  type: 1 = put, 2 = delete
+ *   int   id
+ *   put only:
+ *   int   epoch day of the date
+ *   double amount
+ *   int   length, bytes   description in UTF-8
+ *   int   length, bytes   category in UTF-8
+ * </pre>
+ * Appends, updates and deletes only add records at the end of the log, so none of them
+ * rewrites the file, and other processes read them as changes without reloading.
+ * Loading replays the log; a put for a known ID replaces the expense in place and a
+ * delete removes it. When more than half of the records are superseded,
+ * the log is compacted by writing the live expenses into a new file.
+ * <p>
+ * Records are appended without framing, so a crash while appending can leave the last
+ * record incomplete. Reading stops at the last complete record, and the incomplete bytes
+ * are moved into {@code expenses.bin.damaged} before the log is loaded or appended to.
+ * <p>
+ * Logs of version 1 stored the texts with {@link DataOutputStream#writeUTF(String)},
+ * which cannot hold more than 64 KB; they are rewritten in the current version when opened.
+ */
+public class BinaryExpenseRepository implements ExpenseRepository
+{
+    public static final String EXPENSE_FILE = "expenses.bin";
+    public static final String BUDGET_FILE = "budget.bin";
+    public static final String DAMAGED_FILE = "expenses.bin.damaged";
+
+    private static final int MAGIC = 0x45585031; // "EXP1"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private final Path expenseFile;
+    private final Path budgetFile;
+    private long offset;      // end of the records this repository knows about
+    private long records;     // records in the log
+    private long live;        // expenses the log describes
+
+    /**
+     * Opens the binary log in the given directory, creating an empty one if needed.
+     *
+     * @throws IOException if the log cannot be created or is not an expense log
+     */
+    public BinaryExpenseRepository(Path directory) throws IOException
+    {
+        expenseFile = directory.resolve(EXPENSE_FILE);
+        budgetFile = directory.resolve(BUDGET_FILE);
+        if (Files.notExists(expenseFile))
+        {
+            replaceAll(List.of());
+            System.out.println("File created: " + expenseFile.toAbsolutePath());
+        }
+        else if (readVersion() < VERSION)
+        {
+            try (Stream<Expense> all = loadAll())
+            {
+                replaceAll(all.toList());
+            }
+            System.out.println("Converted " + expenseFile.toAbsolutePath() + " to version " + VERSION);
+        }
+        offset = Files.size(expenseFile);
+    }
+
+    private int readVersion() throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(expenseFile)))
+        {
+            return readHeader(in);
+        }
+    }
+
+    // Returns the version of the log
+    private int readHeader(DataInputStream in) throws IOException
+    {
+        int version;
+        try
+        {
+            version = in.readInt() == MAGIC ? in.readInt() : -1;
+        }
+        catch (EOFException ex)
+        {
+            version = -1;
+        }
+        if (version < 1 || version > VERSION)
+            throw new IOException("Not an expense log: " + expenseFile);
+        return version;
+    }
+
+    @Override
+    public String getName() {
+        return ExpenseRepositories.BINARY;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole log is replayed before the first expense is returned, because later
+     * records may change earlier expenses.
+     */
+    @Override
+    public Stream<Expense> loadAll() throws IOException
+    {
+        Map<Integer, Expense> expenses = new LinkedHashMap<>();
+        try (FileChannel channel = FileChannel.open(expenseFile, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            long size = channel.size();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            int version = readHeader(in);
+            records = 0;
+            offset = HEADER_BYTES + replay(in, size - HEADER_BYTES, version, expenses, null);
+            if (offset < size)
+                dropIncomplete(channel);
+        }
+        live = expenses.size();
+        return new ArrayList<>(expenses.values()).stream();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns the put and delete records after the known end of the log. When the log is
+     * compacted, the ledger generation is increased, so the records read here always
+     * continue the log this repository read before. An incomplete record at the end is
+     * left for the next read.
+     */
+    @Override
+    public List<StoredChange> readAppended() throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(expenseFile, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size < offset)
+                return null;
+            if (size == offset)
+                return List.of();
+
+            channel.position(offset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            List<StoredChange> appended = new ArrayList<>();
+            offset += replay(in, size - offset, VERSION, null, appended);
+            for (StoredChange change: appended)
+            {
+                // an update counts as new here; the next load counts exactly again
+                live += change.isDelete() ? -1 : 1;
+            }
+            return appended;
+        }
+    }
+
+    @Override
+    public boolean mayHaveAppended()
+    {
+        try
+        {
+            return Files.size(expenseFile) != offset;
+        }
+        catch (IOException ex)
+        {
+            return true;
+        }
+    }
+
+    /**
+     * Reads the complete records of the given number of bytes and counts them in
+     * {@code records}. With a map, every record is applied to it. With a list, the records
+     * are collected as changes. Without either, they are only counted.
+     *
+     * @return the number of bytes of the complete records, which is less than {@code bytes}
+     *         if the last record is incomplete or damaged
+     */
+    private long replay(DataInputStream in, long bytes, int version, Map<Integer, Expense> expenses,
+                        List<StoredChange> changes)
+            throws IOException
+    {
+        CountingStream counter = new CountingStream(in);
+        DataInputStream data = new DataInputStream(counter);
+        long complete = 0;
+        while (complete < bytes)
+        {
+            StoredChange change = readRecord(data, counter, bytes, version);
+            if (change == null)
+                break;
+
+            if (expenses != null && change.isDelete())
+                expenses.remove(change.getId());
+            else if (expenses != null)
+                expenses.put(change.getId(), change.getExpense());
+            else if (changes != null)
+                changes.add(change);
+            records++;
+            complete = counter.count;
+        }
+        return complete;
+    }
+
+    // Returns the next record, or null if it ends after the given number of bytes or has an unknown type
+    private StoredChange readRecord(DataInputStream data, CountingStream counter, long bytes, int version)
+            throws IOException
+    {
+        try
+        {
+            byte type = data.readByte();
+            int id = data.readInt();
+            if (type == DELETE)
+                return StoredChange.delete(id);
+            if (type != PUT)
+                return null;
+
+            LocalDate date = LocalDate.ofEpochDay(data.readInt());
+            double amount = data.readDouble();
+            String name = version == 1 ? data.readUTF() : readText(data, bytes - counter.count);
+            String category = version == 1 ? data.readUTF() : readText(data, bytes - counter.count);
+            if (name == null || category == null)
+                return null;
+            return StoredChange.put(new Expense(id, name, amount, date, category));
+        }
+        catch (EOFException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Moves the bytes after the known end of the log into {@value #DAMAGED_FILE} and cuts
+     * them off, so that appended records follow the last complete one.
+     */
+    private void dropIncomplete(FileChannel channel) throws IOException
+    {
+        long size = channel.size();
+        Path damaged = expenseFile.resolveSibling(DAMAGED_FILE);
+        try (FileChannel out = FileChannel.open(damaged, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND))
+        {
+            for (long position = offset; position < size; )
+            {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+        channel.truncate(offset);
+        System.out.println("Removed an incomplete or damaged record of " + (size - offset) + " bytes at the end of "
+                + expenseFile.getFileName() + ". The bytes were copied to " + damaged.getFileName() + ".");
+    }
+
+    @Override
+    public void append(List<Expense> expenses) throws IOException
+    {
+        writeRecords(expenses, PUT);
+        live += expenses.size();
+    }
+
+    @Override
+    public boolean update(Expense expense) throws IOException
+    {
+        writeRecords(List.of(expense), PUT);
+        return compactIfNeeded();
+    }
+
+    @Override
+    public boolean delete(int id) throws IOException
+    {
+        try (DataOutputStream out = appender())
+        {
+            out.writeByte(DELETE);
+            out.writeInt(id);
+        }
+        offset = Files.size(expenseFile);
+        records++;
+        live--;
+        return compactIfNeeded();
+    }
+
+    @Override
+    public void replaceAll(List<Expense> expenses) throws IOException
+    {
+        Path temp = expenseFile.resolveSibling(EXPENSE_FILE + ".tmp");
+        writeLog(temp, expenses);
+        Files.move(temp, expenseFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        offset = Files.size(expenseFile);
+        records = expenses.size();
+        live = expenses.size();
+    }
+
+    // Returns whether the log was rewritten
+    private boolean compactIfNeeded() throws IOException
+    {
+        if (records < MIN_COMPACTION_RECORDS || records < 2 * live)
+            return false;
+
+        List<Expense> current;
+        try (Stream<Expense> all = loadAll())
+        {
+            current = all.toList();
+        }
+        replaceAll(current);
+        return true;
+    }
+
+    private void writeRecords(List<Expense> expenses, byte type) throws IOException
+    {
+        try (DataOutputStream out = appender())
+        {
+            for (Expense expense: expenses)
+            {
+                writeRecord(out, expense, type);
+            }
+        }
+        offset = Files.size(expenseFile);
+        records += expenses.size();
+    }
+
+    private DataOutputStream appender() throws IOException
+    {
+        if (Files.size(expenseFile) > offset)
+            skipAppended();
+        return new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(expenseFile, StandardOpenOption.APPEND), 1 << 16));
+    }
+
+    // Steps over the complete records after the known end of the log and drops an incomplete one
+    private void skipAppended() throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(expenseFile, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            long size = channel.size();
+            channel.position(offset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            offset += replay(in, size - offset, VERSION, null, null);
+            if (offset < size)
+                dropIncomplete(channel);
+        }
+    }
+
+    private static void writeLog(Path file, List<Expense> expenses) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Expense expense: expenses)
+            {
+                writeRecord(out, expense, PUT);
+            }
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Expense expense, byte type) throws IOException
+    {
+        byte[] name = expense.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] category = expense.getCategory().getBytes(StandardCharsets.UTF_8);
+        out.writeByte(type);
+        out.writeInt(expense.getId());
+        out.writeInt((int) expense.getDateOfExpense().toEpochDay());
+        out.writeDouble(expense.getAmount());
+        out.writeInt(name.length);
+        out.write(name);
+        out.writeInt(category.length);
+        out.write(category);
+    }
+
+    // Returns null if the length is negative or more than the bytes that remain
+    private static String readText(DataInputStream in, long remaining) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0 || length > remaining - Integer.BYTES)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public OptionalDouble loadBudget() throws IOException
+    {
+        if (Files.notExists(budgetFile))
+            return OptionalDouble.empty();
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(budgetFile)))
+        {
+            return OptionalDouble.of(in.readDouble());
+        }
+        catch (EOFException ex)
+        {
+            return OptionalDouble.empty();
+        }
+    }
+
+    @Override
+    public void saveBudget(double budget) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(budgetFile)))
+        {
+            out.writeDouble(budget);
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        // every change is written when it is made
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    /**
+     * Counts the bytes read, so a replay stops at the known end of the log.
+     */
+    private static class CountingStream extends InputStream
+    {
+        private final InputStream in;
+        long count;
+
+        CountingStream(InputStream in)
+        {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = in.read();
+            if (b >= 0)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException
+        {
+            int n = in.read(buffer, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package storage.repository;
+
+import model.Expense;
+import storage.csv.CsvRecordReader;
+import storage.csv.ExpenseCsvReader;
+import storage.csv.QuarantineFile;
+import storage.tail.ExpenseFileTail;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.OptionalDouble;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stores the expenses in {@code expenses.csv}, one expense per record as written by
+ * {@link Expense#AsCsvLine()}, and the budget in {@code budget.csv}.
+ * <p>
+ * The file is read as RFC 4180 CSV, so quoted descriptions may contain commas, quotes and
+ * line breaks. Malformed records do not stop the load: they are moved to
+ * {@code quarantine.csv} with their line number and the reason, and the other expenses
+ * are loaded.
+ * <p>
+ * Appends add lines at the end of the file. Updates and deletes rewrite the file into a
+ * temporary file that then replaces it, so the file stays a plain list of expenses that
+ * other programs can read, and other processes reload it after such a change.
+ * Lines appended by other programs are read with an {@link ExpenseFileTail}; they may
+ * leave out the ID (name, amount, date, category), in which case a new ID is assigned
+ * and the line is written back with it.
+ */
+public class CsvExpenseRepository implements ExpenseRepository
+{
+    public static final String EXPENSE_FILE = "expenses.csv";
+    public static final String BUDGET_FILE = "budget.csv";
+
+    private final Path expenseFile;
+    private final Path budgetFile;
+    private final ExpenseFileTail tail;
+    private final QuarantineFile quarantine;
+
+    /**
+     * Opens the CSV files in the given directory, creating empty ones if needed.
+     *
+     * @throws IOException if the files cannot be created
+     */
+    public CsvExpenseRepository(Path directory) throws IOException
+    {
+        expenseFile = directory.resolve(EXPENSE_FILE);
+        budgetFile = directory.resolve(BUDGET_FILE);
+        createFile(expenseFile);
+        createFile(budgetFile);
+        tail = new ExpenseFileTail(expenseFile, Files.size(expenseFile));
+        quarantine = new QuarantineFile(directory.resolve(QuarantineFile.FILE_NAME));
+    }
+
+    private static void createFile(Path file) throws IOException
+    {
+        // checks and creates in one step, since another instance may be starting as well
+        if (file.toFile().createNewFile())
+        {
+            System.out.println("File created: " + file.toAbsolutePath());
+        }
+        else
+        {
+            System.out.println("File already exists: " + file.toAbsolutePath());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return ExpenseRepositories.CSV;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The file is read as it is streamed. Malformed records are skipped with a warning
+     * and written to the quarantine file when the stream is closed.
+     */
+    @Override
+    public Stream<Expense> loadAll() throws IOException
+    {
+        tail.reset(Files.size(expenseFile));
+        ExpenseCsvReader reader = new ExpenseCsvReader(Files.newBufferedReader(expenseFile, StandardCharsets.UTF_8), false);
+
+        Iterator<Expense> rows = new Iterator<>()
+        {
+            private Expense next;
+
+            @Override
+            public boolean hasNext()
+            {
+                try
+                {
+                    while (next == null && reader.next())
+                    {
+                        next = reader.getExpense();
+                        if (next == null)
+                            quarantine(EXPENSE_FILE, String.valueOf(reader.getLine()), reader);
+                    }
+                    return next != null;
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+            @Override
+            public Expense next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Expense expense = next;
+                next = null;
+                return expense;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() ->
+                {
+                    try
+                    {
+                        reader.close();
+                        flushQuarantine();
+                    }
+                    catch (IOException ex)
+                    {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+    }
+
+    private void quarantine(String source, String line, ExpenseCsvReader reader)
+    {
+        System.out.println("Skipping invalid record at line " + line + " of " + source + ": " + reader.getReason());
+        quarantine.add(source, line, reader.getReason(), reader.getRecord());
+    }
+
+    private void flushQuarantine() throws IOException
+    {
+        int written = quarantine.flush();
+        if (written > 0)
+            System.out.println("Moved " + written + " invalid records to " + quarantine.getFile().toAbsolutePath());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Invalid records are skipped with a warning and moved to the quarantine file. If some
+     * records had no ID, the appended records are written again with the assigned IDs, so
+     * the expenses keep them when the file is loaded the next time. Must be called while
+     * holding the ledger lock.
+     */
+    @Override
+    public List<StoredChange> readAppended() throws IOException
+    {
+        long start = tail.getLineOffset();
+        List<String> lines = tail.readNewLines();
+        if (tail.wasTruncated())
+            return null;
+
+        List<Expense> appended = new ArrayList<>();
+        boolean missingIds = false;
+        String source = EXPENSE_FILE + " (appended after byte " + start + ")";
+        try (ExpenseCsvReader reader = new ExpenseCsvReader(new StringReader(String.join("\n", lines)), true))
+        {
+            while (reader.next())
+            {
+                if (reader.getExpense() == null)
+                {
+                    quarantine(source, String.valueOf(reader.getLine()), reader);
+                    continue;
+                }
+                appended.add(reader.getExpense());
+                missingIds |= reader.isMissingId();
+            }
+        }
+        flushQuarantine();
+
+        if (missingIds)
+            replaceAppended(start, tail.getLineOffset(), appended);
+
+        List<StoredChange> changes = new ArrayList<>(appended.size());
+        for (Expense expense: appended)
+        {
+            changes.add(StoredChange.put(expense));
+        }
+        return changes;
+    }
+
+    /**
+     * Writes the file again with the given expenses in place of the records between two
+     * offsets. The file is copied into a temporary file that then replaces it, so the
+     * records are never only in memory, and the bytes after the end offset, which other
+     * programs may still be appending to, are copied as they are until the file stops growing.
+     */
+    private void replaceAppended(long start, long end, List<Expense> expenses) throws IOException
+    {
+        StringBuilder records = new StringBuilder();
+        for (Expense expense: expenses)
+        {
+            records.append(expense.AsCsvLine()).append(System.lineSeparator());
+        }
+
+        Path temp = expenseFile.resolveSibling(EXPENSE_FILE + ".tmp");
+        long written;
+        try (FileChannel in = FileChannel.open(expenseFile, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            copy(in, 0, start, out);
+            ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining())
+            {
+                out.write(buffer);
+            }
+            written = out.position();
+
+            long copied = end;
+            for (long size = in.size(); size > copied; size = in.size())
+            {
+                copy(in, copied, size, out);
+                copied = size;
+            }
+        }
+        Files.move(temp, expenseFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the copied bytes after the records have not been read yet
+        tail.reset(written);
+    }
+
+    private static void copy(FileChannel in, long from, long to, FileChannel out) throws IOException
+    {
+        while (from < to)
+        {
+            from += in.transferTo(from, to - from, out);
+        }
+    }
+
+    @Override
+    public boolean mayHaveAppended()
+    {
+        try
+        {
+            return Files.size(expenseFile) != tail.getOffset();
+        }
+        catch (IOException ex)
+        {
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Other programs append to the file without the ledger lock. If one left a line
+     * without a line break, a line break is written first, so the records are not glued
+     * onto it. The tail only moves past the new records if it had read everything before
+     * them; otherwise the next {@link #readAppended()} reads the lines of the other
+     * programs together with these records, which the ledger already holds.
+     */
+    @Override
+    public void append(List<Expense> expenses) throws IOException
+    {
+        StringBuilder records = new StringBuilder();
+        if (!endsWithLineBreak())
+            records.append(System.lineSeparator());
+        for (Expense expense: expenses)
+        {
+            records.append(expense.AsCsvLine()).append(System.lineSeparator());
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+        int length = buffer.remaining();
+        try (FileChannel out = FileChannel.open(expenseFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+        {
+            while (buffer.hasRemaining())
+            {
+                out.write(buffer);
+            }
+            // in append mode the position is the size, which includes any bytes appended after these
+            long end = out.position();
+            if (end - length == tail.getLineOffset())
+                tail.reset(end);
+        }
+    }
+
+    private boolean endsWithLineBreak() throws IOException
+    {
+        try (FileChannel in = FileChannel.open(expenseFile, StandardOpenOption.READ))
+        {
+            long size = in.size();
+            if (size == 0)
+                return true;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            in.read(last, size - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    @Override
+    public boolean update(Expense expense) throws IOException
+    {
+        rewriteLines(expense.getId(), expense.AsCsvLine());
+        return true;
+    }
+
+    @Override
+    public boolean delete(int id) throws IOException
+    {
+        rewriteLines(id, null);
+        return true;
+    }
+
+    // Rewrites the file, replacing the record of the given ID, or dropping it if replacement is null.
+    // Other records are kept as they are, malformed ones included. The records are split with the
+    // field count that loadAll expects, so both see the same records in a malformed file.
+    private void rewriteLines(int id, String replacement) throws IOException
+    {
+        String key = String.valueOf(id);
+        List<String> rewritten = new ArrayList<>();
+        try (CsvRecordReader records = new CsvRecordReader(Files.newBufferedReader(expenseFile, StandardCharsets.UTF_8), ','))
+        {
+            records.expectFields(ExpenseCsvReader.FIELDS, ExpenseCsvReader.FIELDS);
+            while (records.next())
+            {
+                if (records.isBlank())
+                    continue;
+                if (records.getError() != null || !records.fields().get(0).trim().equals(key))
+                    rewritten.add(records.getRaw());
+                else if (replacement != null)
+                    rewritten.add(replacement);
+            }
+        }
+        writeLines(rewritten);
+    }
+
+    @Override
+    public void replaceAll(List<Expense> expenses) throws IOException
+    {
+        List<String> lines = new ArrayList<>(expenses.size());
+        for (Expense expense: expenses)
+        {
+            lines.add(expense.AsCsvLine());
+        }
+        writeLines(lines);
+    }
+
+    // Writes a temporary file and moves it over the expense file, so a crash or a full disk
+    // leaves either the old or the new file, never a truncated one
+    private void writeLines(List<String> lines) throws IOException
+    {
+        Path temp = expenseFile.resolveSibling(EXPENSE_FILE + ".tmp");
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))))
+        {
+            for (String line: lines)
+            {
+                writer.println(line);
+            }
+            if (writer.checkError())
+                throw new IOException("Cannot write " + temp);
+        }
+        Files.move(temp, expenseFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        tail.reset(Files.size(expenseFile));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The budget is the first line of the budget file. An invalid value is reported and
+     * treated as no budget.
+     */
+    @Override
+    public OptionalDouble loadBudget() throws IOException
+    {
+        List<String> lines = Files.readAllLines(budgetFile, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || lines.get(0).isEmpty())
+            return OptionalDouble.empty();
+
+        try
+        {
+            return OptionalDouble.of(Double.parseDouble(lines.get(0)));
+        }
+        catch (NumberFormatException ex)
+        {
+            System.out.println("Invalid budget value in file. Using default 0.");
+            return OptionalDouble.empty();
+        }
+    }
+
+    @Override
+    public void saveBudget(double budget) throws IOException
+    {
+        try (BufferedWriter writer = Files.newBufferedWriter(budgetFile, StandardCharsets.UTF_8))
+        {
+            writer.write(String.valueOf(budget));
+            writer.newLine();
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        // every change is written when it is made
+    }
+
+    @Override
+    public void close()
+    {
+    }
+}
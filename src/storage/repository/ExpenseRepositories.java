@@ -0,0 +1,88 @@
+package storage.repository;
+
+import model.Expense;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalDouble;
+import java.util.stream.Stream;
+
+/**
+ * Opens the expense repository selected by name.
+ * <p>
+ * The backend is chosen at startup with the {@value #BACKEND_PROPERTY} system property or
+ * the {@code --backend=} program argument: {@value #CSV} (the default), {@value #BINARY}
+ * or {@value #MEMORY}.
+ */
+public final class ExpenseRepositories
+{
+    public static final String BACKEND_PROPERTY = "expense.backend";
+    public static final String CSV = "csv";
+    public static final String BINARY = "binary";
+    public static final String MEMORY = "memory";
+
+    private ExpenseRepositories()
+    {
+    }
+
+    /**
+     * Returns the backend named by the {@value #BACKEND_PROPERTY} system property, or
+     * {@value #CSV} if it is not set.
+     */
+    public static String defaultBackend()
+    {
+        return System.getProperty(BACKEND_PROPERTY, CSV);
+    }
+
+    /**
+     * Opens a repository in the given directory.
+     * <p>
+     * When the binary backend is opened for the first time in a directory that holds an
+     * expense CSV file, the expenses and the budget are copied from the CSV files.
+     *
+     * @param backend   the name of the backend
+     * @param directory the data directory
+     * @throws IOException              if the repository cannot be opened
+     * @throws IllegalArgumentException if the backend name is unknown
+     */
+    public static ExpenseRepository open(String backend, Path directory) throws IOException
+    {
+        switch (backend.toLowerCase(Locale.ROOT))
+        {
+            case CSV:
+                return new CsvExpenseRepository(directory);
+
+            case BINARY:
+                Path csv = directory.resolve(CsvExpenseRepository.EXPENSE_FILE);
+                boolean migrate = Files.notExists(directory.resolve(BinaryExpenseRepository.EXPENSE_FILE))
+                        && Files.exists(csv) && Files.size(csv) > 0;
+                BinaryExpenseRepository binary = new BinaryExpenseRepository(directory);
+                if (migrate)
+                {
+                    CsvExpenseRepository source = new CsvExpenseRepository(directory);
+                    List<Expense> expenses;
+                    try (Stream<Expense> rows = source.loadAll())
+                    {
+                        expenses = rows.toList();
+                    }
+                    binary.replaceAll(expenses);
+                    OptionalDouble budget = source.loadBudget();
+                    if (budget.isPresent())
+                        binary.saveBudget(budget.getAsDouble());
+                    System.out.println("Copied " + expenses.size() + " expenses from " + csv.getFileName()
+                            + " into " + BinaryExpenseRepository.EXPENSE_FILE + ".");
+                }
+                return binary;
+
+            case MEMORY:
+                return new InMemoryExpenseRepository();
+
+            default:
+                throw new IllegalArgumentException("Unknown storage backend: " + backend
+                        + ". Use " + CSV + ", " + BINARY + " or " + MEMORY + ".");
+        }
+    }
+}
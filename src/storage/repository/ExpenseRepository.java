@@ -0,0 +1,118 @@
+package storage.repository;
+
+import model.Expense;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.stream.Stream;
+
+/**
+ * Stores the expenses of the current ledger and the monthly budget.
+ * <p>
+ * {@link storage.Storage} keeps the ledger in memory and tells the repository about every
+ * change, so a repository only has to persist changes, never to answer queries. All calls
+ * are made while holding the ledger lock of the data directory, one at a time.
+ * <p>
+ * Several processes may use the same repository. A process learns about the changes that
+ * others stored through {@link #readAppended()}. A backend that stores updates and deletes
+ * as appended records returns them there too; one that has to rewrite the stored data for
+ * them says so, and the ledger generation is then increased so the other processes
+ * reload everything.
+ */
+public interface ExpenseRepository extends Closeable
+{
+    /**
+     * Returns a short name of the storage format, such as {@code csv}.
+     */
+    String getName();
+
+    /**
+     * Streams all stored expenses in storage order. The stream must be closed after use.
+     * Reading starts a new {@link #readAppended()} position at the end of the stored data.
+     *
+     * @throws IOException if the stored data cannot be read
+     */
+    Stream<Expense> loadAll() throws IOException;
+
+    /**
+     * Returns the changes appended by other processes or programs since the last load,
+     * change or rewrite of this repository, in the order they were stored.
+     *
+     * @return the new changes, or null if the stored data was changed in another way and
+     * must be loaded again with {@link #loadAll()}
+     * @throws IOException if the stored data cannot be read
+     */
+    List<StoredChange> readAppended() throws IOException;
+
+    /**
+     * Tells cheaply, without the ledger lock, whether {@link #readAppended()} may find
+     * something. May answer true when nothing changed, but never false when something did.
+     */
+    default boolean mayHaveAppended()
+    {
+        return true;
+    }
+
+    /**
+     * Stores new expenses after the existing ones.
+     *
+     * @throws IOException if the expenses cannot be stored
+     */
+    void append(List<Expense> expenses) throws IOException;
+
+    /**
+     * Replaces the stored expense that has the same ID.
+     *
+     * @return true if the stored data was rewritten, so other processes have to load it
+     * again; false if the change was appended for {@link #readAppended()}
+     * @throws IOException if the change cannot be stored
+     */
+    boolean update(Expense expense) throws IOException;
+
+    /**
+     * Removes the stored expense with the given ID.
+     *
+     * @return true if the stored data was rewritten, so other processes have to load it
+     * again; false if the change was appended for {@link #readAppended()}
+     * @throws IOException if the change cannot be stored
+     */
+    boolean delete(int id) throws IOException;
+
+    /**
+     * Replaces all stored expenses with the given ones, in the given order.
+     *
+     * @throws IOException if the expenses cannot be stored
+     */
+    void replaceAll(List<Expense> expenses) throws IOException;
+
+    /**
+     * Returns the stored monthly budget, or an empty value if none was stored yet.
+     *
+     * @throws IOException if the budget cannot be read
+     */
+    OptionalDouble loadBudget() throws IOException;
+
+    /**
+     * Stores the monthly budget.
+     *
+     * @throws IOException if the budget cannot be stored
+     */
+    void saveBudget(double budget) throws IOException;
+
+    /**
+     * Makes sure that all changes are written to the underlying storage.
+     *
+     * @throws IOException if the changes cannot be written
+     */
+    void flush() throws IOException;
+
+    /**
+     * Flushes the changes and releases the resources of the repository.
+     *
+     * @throws IOException if the changes cannot be written
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,96 @@
+package storage.repository;
+
+import model.Expense;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the expenses in memory only, for tests and benchmarks that should not measure
+ * or depend on disk I/O. Nothing survives the process, and other processes never see
+ * the expenses.
+ */
+public class InMemoryExpenseRepository implements ExpenseRepository
+{
+    private final Map<Integer, Expense> expenses = new LinkedHashMap<>();
+    private Double budget;
+
+    @Override
+    public String getName() {
+        return ExpenseRepositories.MEMORY;
+    }
+
+    @Override
+    public synchronized Stream<Expense> loadAll()
+    {
+        return new ArrayList<>(expenses.values()).stream();
+    }
+
+    @Override
+    public List<StoredChange> readAppended()
+    {
+        return List.of();
+    }
+
+    @Override
+    public boolean mayHaveAppended()
+    {
+        return false;
+    }
+
+    @Override
+    public synchronized void append(List<Expense> batch)
+    {
+        for (Expense expense: batch)
+        {
+            expenses.put(expense.getId(), expense);
+        }
+    }
+
+    @Override
+    public synchronized boolean update(Expense expense)
+    {
+        expenses.replace(expense.getId(), expense);
+        return false;
+    }
+
+    @Override
+    public synchronized boolean delete(int id)
+    {
+        expenses.remove(id);
+        return false;
+    }
+
+    @Override
+    public synchronized void replaceAll(List<Expense> all)
+    {
+        expenses.clear();
+        append(all);
+    }
+
+    @Override
+    public synchronized OptionalDouble loadBudget()
+    {
+        return budget == null ? OptionalDouble.empty() : OptionalDouble.of(budget);
+    }
+
+    @Override
+    public synchronized void saveBudget(double budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,212 @@
+package storage.repository;
+
+import model.Expense;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the same checks against every {@link ExpenseRepository} backend, each in a new
+ * temporary directory, and prints PASS or FAIL per check.
+ * <p>
+ * Usage: {@code java storage.repository.RepositoryConformance [backend ...]}; without
+ * arguments all backends are checked. The exit status is 1 if a check failed.
+ */
+public class RepositoryConformance
+{
+    private int failures;
+
+    public static void main(String[] args) throws IOException
+    {
+        List<String> backends = args.length == 0
+                ? List.of(ExpenseRepositories.CSV, ExpenseRepositories.BINARY, ExpenseRepositories.MEMORY)
+                : List.of(args);
+
+        RepositoryConformance conformance = new RepositoryConformance();
+        for (String backend: backends)
+        {
+            conformance.check(backend);
+        }
+
+        System.out.println(conformance.failures == 0 ? "All checks passed." : conformance.failures + " checks failed.");
+        if (conformance.failures > 0)
+            System.exit(1);
+    }
+
+    private void check(String backend) throws IOException
+    {
+        System.out.println("\n" + backend);
+        Path dir = Files.createTempDirectory("repository-" + backend);
+        boolean persistent = !ExpenseRepositories.MEMORY.equals(backend);
+        LocalDate day = LocalDate.of(2024, 3, 1);
+
+        try
+        {
+            try (ExpenseRepository repository = ExpenseRepositories.open(backend, dir))
+            {
+                expect("starts empty", load(repository).isEmpty());
+
+                List<Expense> first = List.of(
+                        new Expense(1, "Bread", 2.5, day, "Food"),
+                        new Expense(2, "Bus, monthly \"pass\"", 40, day.plusDays(1), "Travel"),
+                        new Expense(3, "Rent\nMarch", 800, day.plusDays(2), "Home"));
+                repository.append(first);
+                expect("loads appended expenses", sameExpenses(first, load(repository)));
+                expect("keeps commas and quotes in names",
+                        load(repository).get(1).getName().equals("Bus, monthly \"pass\""));
+                expect("keeps line breaks in names", load(repository).get(2).getName().equals("Rent\nMarch"));
+
+                String longName = "x".repeat(70_000);
+                repository.update(first.get(2).withName(longName));
+                expect("keeps names over 64 KB", byId(load(repository), 3).getName().equals(longName));
+                repository.update(first.get(2));
+
+                repository.update(first.get(0).withAmount(3.75));
+                List<Expense> loaded = load(repository);
+                expect("updates an expense", loaded.size() == 3 && byId(loaded, 1).getAmount() == 3.75);
+
+                repository.delete(2);
+                loaded = load(repository);
+                expect("deletes an expense", loaded.size() == 2 && byId(loaded, 2) == null);
+
+                List<Expense> replaced = List.of(
+                        new Expense(7, "Cinema", 12, day.plusDays(5), "Fun"),
+                        new Expense(5, "Coffee", 3, day.plusDays(4), "Food"));
+                repository.replaceAll(replaced);
+                expect("replaces all expenses in order", sameExpenses(replaced, load(repository)));
+
+                repository.saveBudget(1234.5);
+                OptionalDouble budget = repository.loadBudget();
+                expect("stores the budget", budget.isPresent() && budget.getAsDouble() == 1234.5);
+                repository.flush();
+            }
+
+            if (!persistent)
+                return;
+
+            try (ExpenseRepository reopened = ExpenseRepositories.open(backend, dir);
+                 ExpenseRepository other = ExpenseRepositories.open(backend, dir))
+            {
+                List<Expense> loaded = load(reopened);
+                expect("keeps expenses after reopening", loaded.size() == 2 && byId(loaded, 7) != null);
+                OptionalDouble budget = reopened.loadBudget();
+                expect("keeps the budget after reopening", budget.isPresent() && budget.getAsDouble() == 1234.5);
+
+                load(other);
+                Expense added = new Expense(9, "Taxi", 18, day.plusDays(6), "Travel");
+                reopened.append(List.of(added));
+                List<StoredChange> appended = other.readAppended();
+                expect("sees expenses appended by another instance",
+                        appended != null && appended.size() == 1 && appended.get(0).getId() == 9);
+
+                // a backend that rewrites for updates and deletes makes the other instances reload
+                if (!reopened.update(added.withAmount(19)) && !reopened.delete(7))
+                {
+                    List<StoredChange> changed = other.readAppended();
+                    expect("sees updates and deletes by another instance", changed != null && changed.size() == 2
+                            && changed.get(0).getExpense().getAmount() == 19 && changed.get(1).isDelete()
+                            && changed.get(1).getId() == 7);
+                }
+            }
+
+            if (ExpenseRepositories.BINARY.equals(backend))
+                checkCompaction(dir, day);
+            if (ExpenseRepositories.CSV.equals(backend))
+                checkUnclosedQuote(dir);
+        }
+        finally
+        {
+            deleteDirectory(dir);
+        }
+    }
+
+    private void checkCompaction(Path dir, LocalDate day) throws IOException
+    {
+        Path log = dir.resolve(BinaryExpenseRepository.EXPENSE_FILE);
+        try (ExpenseRepository repository = ExpenseRepositories.open(ExpenseRepositories.BINARY, dir))
+        {
+            Expense expense = new Expense(20, "Lunch", 10, day, "Food");
+            repository.append(List.of(expense));
+            long grown = 0;
+            for (int i = 0; i < 5000; i++)
+            {
+                repository.update(expense.withAmount(i));
+                grown = Math.max(grown, Files.size(log));
+            }
+
+            List<Expense> loaded = load(repository);
+            expect("compacts the update log", Files.size(log) < grown && byId(loaded, 20).getAmount() == 4999);
+        }
+    }
+
+    // An unclosed quote must not make updates and deletes see other records than loading does
+    private void checkUnclosedQuote(Path dir) throws IOException
+    {
+        Files.writeString(dir.resolve(CsvExpenseRepository.EXPENSE_FILE),
+                "11,\"Taxi,12.0,2025-01-01,Travel\n12,Bus,40.0,2025-01-02,Travel\"\n");
+        try (ExpenseRepository repository = ExpenseRepositories.open(ExpenseRepositories.CSV, dir))
+        {
+            List<Expense> loaded = load(repository);
+            expect("loads the record after an unclosed quote", loaded.size() == 1 && byId(loaded, 12) != null);
+
+            repository.update(byId(loaded, 12).withAmount(41));
+            loaded = load(repository);
+            expect("updates the record after an unclosed quote", loaded.size() == 1 && byId(loaded, 12).getAmount() == 41);
+
+            repository.delete(12);
+            expect("deletes the record after an unclosed quote", load(repository).isEmpty());
+        }
+    }
+
+    private static List<Expense> load(ExpenseRepository repository) throws IOException
+    {
+        try (Stream<Expense> rows = repository.loadAll())
+        {
+            return rows.collect(Collectors.toList());
+        }
+    }
+
+    private static Expense byId(List<Expense> expenses, int id)
+    {
+        for (Expense expense: expenses)
+        {
+            if (expense.getId() == id)
+                return expense;
+        }
+        return null;
+    }
+
+    private static boolean sameExpenses(List<Expense> expected, List<Expense> actual)
+    {
+        return expected.stream().map(Expense::AsCsvLine).collect(Collectors.toList())
+                .equals(actual.stream().map(Expense::AsCsvLine).collect(Collectors.toList()));
+    }
+
+    private void expect(String check, boolean passed)
+    {
+        System.out.println((passed ? "  PASS  " : "  FAIL  ") + check);
+        if (!passed)
+            failures++;
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException
+    {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(dir))
+        {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toCollection(ArrayList::new));
+        }
+        for (Path path: paths)
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package storage.repository;
+
+import model.Expense;
+
+/**
+ * A change that another process stored, as read by {@link ExpenseRepository#readAppended()}.
+ * <p>
+ * A put carries the stored expense, which is new or replaces the expense with the same
+ * ID. A delete only carries the ID of the removed expense.
+ */
+public class StoredChange
+{
+    private final int id;
+    private final Expense expense;
+
+    private StoredChange(int id, Expense expense)
+    {
+        this.id = id;
+        this.expense = expense;
+    }
+
+    public static StoredChange put(Expense expense)
+    {
+        return new StoredChange(expense.getId(), expense);
+    }
+
+    public static StoredChange delete(int id)
+    {
+        return new StoredChange(id, null);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the stored expense, or null if the change is a delete.
+     */
+    public Expense getExpense() {
+        return expense;
+    }
+
+    public boolean isDelete() {
+        return expense == null;
+    }
+}
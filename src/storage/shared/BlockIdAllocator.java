@@ -0,0 +1,116 @@
+package storage.shared;
+
+import model.IdAllocator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Hands out IDs from blocks reserved in a file shared by all processes.
+ * <p>
+ * The file holds the first ID that no process has reserved yet. When its current block
+ * runs out, a process takes the {@link LedgerLock}, reserves the next block by advancing
+ * the file and hands out the IDs of that block without touching the file again. Processes
+ * therefore never hand out the same ID; unused IDs of a block are simply skipped.
+ */
+public class BlockIdAllocator implements IdAllocator
+{
+    private final Path file;
+    private final LedgerLock lock;
+    private final int blockSize;
+    private int next;
+    private int blockEnd;
+    private int highestReserved;
+
+    /**
+     * @param file      the file that holds the next unreserved ID
+     * @param lock      the lock that guards the file
+     * @param blockSize the number of IDs reserved at once
+     */
+    public BlockIdAllocator(Path file, LedgerLock lock, int blockSize)
+    {
+        this.file = file;
+        this.lock = lock;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if a new block cannot be reserved
+     */
+    @Override
+    public int next()
+    {
+        synchronized (this)
+        {
+            if (next < blockEnd)
+                return next++;
+        }
+
+        // The ledger lock is taken before this object's lock, in the same order as threads
+        // that load expenses while holding the ledger lock
+        try
+        {
+            lock.lock();
+            try
+            {
+                synchronized (this)
+                {
+                    if (next >= blockEnd)
+                        reserveBlock();
+                    return next++;
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException("Cannot reserve expense IDs in " + file, ex);
+        }
+    }
+
+    /**
+     * Records an ID found in the ledger. New blocks always start above the highest one,
+     * which also covers ledgers written before the ID file existed.
+     */
+    @Override
+    public synchronized void reserve(int id)
+    {
+        highestReserved = Math.max(highestReserved, id);
+        if (id >= next && id < blockEnd)
+            next = id + 1;
+    }
+
+    // Must be called while holding the ledger lock and this object's lock
+    private void reserveBlock() throws IOException
+    {
+        int start = Math.max(readNext(), highestReserved + 1);
+        SharedFiles.write(file, Integer.toString(start + blockSize));
+        next = start;
+        blockEnd = start + blockSize;
+    }
+
+    private int readNext() throws IOException
+    {
+        try
+        {
+            return Integer.parseInt(Files.readString(file, StandardCharsets.UTF_8).trim());
+        }
+        catch (NoSuchFileException ex)
+        {
+            return 1;
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IOException("Damaged ID file: " + file, ex);
+        }
+    }
+}
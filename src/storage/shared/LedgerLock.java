@@ -0,0 +1,86 @@
+package storage.shared;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An exclusive lock on the data directory, shared by all processes that use it.
+ * <p>
+ * The lock is an OS file lock on a lock file, combined with a local lock because a
+ * process cannot hold two file locks on the same file. It is reentrant: a thread that
+ * already holds it may lock it again and only the outermost {@link #unlock()} releases
+ * the file lock. It should be held only for short critical sections, such as checking
+ * the ledger version and writing a change.
+ */
+public class LedgerLock implements Closeable
+{
+    private final FileChannel channel;
+    private final ReentrantLock local = new ReentrantLock();
+    private FileLock fileLock;
+
+    /**
+     * Opens the lock file, creating it if needed. The lock is not taken yet.
+     *
+     * @throws IOException if the lock file cannot be opened
+     */
+    public LedgerLock(Path file) throws IOException
+    {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Waits until no other thread or process holds the lock and takes it.
+     *
+     * @throws IOException if the file lock cannot be taken
+     */
+    public void lock() throws IOException
+    {
+        local.lock();
+        if (local.getHoldCount() > 1)
+            return;
+
+        try
+        {
+            fileLock = channel.lock();
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            local.unlock();
+            throw ex;
+        }
+    }
+
+    /**
+     * Releases the lock taken by the matching {@link #lock()}.
+     */
+    public void unlock()
+    {
+        try
+        {
+            if (local.getHoldCount() == 1 && fileLock != null)
+            {
+                fileLock.release();
+                fileLock = null;
+            }
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error releasing the ledger lock: " + ex.getMessage());
+        }
+        finally
+        {
+            local.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
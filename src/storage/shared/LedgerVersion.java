@@ -0,0 +1,59 @@
+package storage.shared;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * The generation counter of the expense file, kept in a small file next to it.
+ * <p>
+ * Appending expenses leaves the generation unchanged, so other processes only read the
+ * appended lines. Rewriting the file, for updates and deletes, increases it, which tells
+ * other processes that their copy is stale and must be reloaded. The generation is only
+ * changed while holding the {@link LedgerLock}.
+ */
+public class LedgerVersion
+{
+    private final Path file;
+
+    public LedgerVersion(Path file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Returns the current generation, or 0 if the file does not exist yet.
+     * A value that cannot be read is returned as -1, so it never matches a known generation.
+     *
+     * @throws IOException if the file exists but cannot be read
+     */
+    public long read() throws IOException
+    {
+        try
+        {
+            return Long.parseLong(Files.readString(file, StandardCharsets.UTF_8).trim());
+        }
+        catch (NoSuchFileException ex)
+        {
+            return 0;
+        }
+        catch (NumberFormatException ex)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Increases the generation and returns the new value.
+     *
+     * @throws IOException if the file cannot be read or written
+     */
+    public long increment() throws IOException
+    {
+        long next = Math.max(read(), 0) + 1;
+        SharedFiles.write(file, Long.toString(next));
+        return next;
+    }
+}
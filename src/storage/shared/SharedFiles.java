@@ -0,0 +1,30 @@
+package storage.shared;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes the small files that processes sharing the data directory read.
+ */
+final class SharedFiles
+{
+    private SharedFiles()
+    {
+    }
+
+    /**
+     * Replaces the content of a file by writing a temporary file next to it and moving it
+     * over the file, so a crash leaves either the old or the new content, never a partial one.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path file, String content) throws IOException
+    {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,139 @@
+package storage.tail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the lines appended to a file since the last read.
+ * <p>
+ * The tail remembers the byte offset it has read up to, and each call to
+ * {@link #readNewLines()} reads only the bytes between that offset and the current end of
+ * the file. A line that is still being written (no line break yet) is kept back until it
+ * is complete, so callers only ever see whole lines. The file is never reread from the start.
+ * <p>
+ * Instances are not thread-safe; the owner has to serialize access.
+ */
+public class ExpenseFileTail
+{
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final Path file;
+    private long offset;
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+    private boolean truncated;
+
+    /**
+     * @param file   the file to follow
+     * @param offset the offset up to which the file has already been read
+     */
+    public ExpenseFileTail(Path file, long offset)
+    {
+        this.file = file;
+        this.offset = offset;
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Returns the offset just after the last complete line that was read, which is before
+     * the bytes of a line that is still being written.
+     */
+    public long getLineOffset()
+    {
+        return offset - partialLine.size();
+    }
+
+    /**
+     * Moves the tail to the given offset, e.g. after the owner has written the file itself.
+     *
+     * @param offset the new offset
+     */
+    public void reset(long offset)
+    {
+        this.offset = offset;
+        partialLine.reset();
+    }
+
+    /**
+     * @return true if the file was found shorter than the offset on the last read,
+     * which means it was truncated or replaced by someone else
+     */
+    public boolean wasTruncated()
+    {
+        return truncated;
+    }
+
+    /**
+     * Reads the complete lines appended since the last call.
+     *
+     * @return the new lines, without line terminators
+     * @throws IOException if the file cannot be read
+     */
+    public List<String> readNewLines() throws IOException
+    {
+        List<String> lines = new ArrayList<>();
+        truncated = false;
+        if (!Files.exists(file))
+            return lines;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size < offset)
+            {
+                truncated = true;
+                reset(size);
+                return lines;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_BYTES, Math.max(1, size - offset)));
+            while (offset < size)
+            {
+                buffer.clear();
+                int read = channel.read(buffer, offset);
+                if (read <= 0)
+                    break;
+                offset += read;
+
+                byte[] bytes = buffer.array();
+                int lineStart = 0;
+                for (int i = 0; i < read; i++)
+                {
+                    if (bytes[i] == '\n')
+                    {
+                        partialLine.write(bytes, lineStart, i - lineStart);
+                        lines.add(decode(partialLine.toByteArray()));
+                        partialLine.reset();
+                        lineStart = i + 1;
+                    }
+                }
+                partialLine.write(bytes, lineStart, read - lineStart);
+            }
+        }
+        return lines;
+    }
+
+    private static String decode(byte[] line)
+    {
+        int length = line.length;
+        if (length > 0 && line[length - 1] == '\r')
+            length--;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+}
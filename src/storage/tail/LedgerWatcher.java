@@ -0,0 +1,90 @@
+package storage.tail;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the data directory and its inbox for changes made by other programs.
+ * <p>
+ * Every file system event, and in any case every {@value #POLL_MILLIS} ms, runs the given
+ * action on a daemon thread. The periodic run keeps the ingest latency below a second on
+ * platforms whose {@link WatchService} polls the file system slowly instead of receiving
+ * native notifications.
+ */
+public class LedgerWatcher
+{
+    private static final long POLL_MILLIS = 250;
+
+    private final WatchService watchService;
+    private final Runnable onChange;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * @param directories the directories to watch
+     * @param onChange    the action to run when something may have changed
+     * @throws IOException if the watch service cannot be created
+     */
+    public LedgerWatcher(Runnable onChange, Path... directories) throws IOException
+    {
+        this.onChange = onChange;
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path directory: directories)
+        {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+
+        thread = new Thread(this::watchLoop, "ledger-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void close()
+    {
+        running = false;
+        try
+        {
+            watchService.close();
+            thread.join(1000);
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error closing the file watcher: " + ex.getMessage());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watchLoop()
+    {
+        while (running)
+        {
+            try
+            {
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null)
+                {
+                    key.pollEvents();
+                    key.reset();
+                }
+                onChange.run();
+            }
+            catch (InterruptedException | ClosedWatchServiceException ex)
+            {
+                return;
+            }
+            catch (RuntimeException ex)
+            {
+                System.out.println("Error while ingesting external changes: " + ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package storage.views;
+
+import model.Expense;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps rolling statistics of the expense amounts per category, to tell whether a new
+ * expense is unusual for its category.
+ * <p>
+ * Every expense contributes with the weight {@code 2^((day - anchor) / halfLife)}, so
+ * recent expenses count more than old ones. The weighted sums of 1, x and x² are kept,
+ * which gives the time-decayed mean and variance, and since the weight of an expense
+ * only depends on its own date, removing it subtracts exactly what adding it added.
+ * <p>
+ * The spending of the last {@code 7}, {@code 30} and {@code 90} days is kept in a ring
+ * buffer of daily totals indexed by epoch day, with running sums per window. When the
+ * date changes, the days that left a window are subtracted, so adds, updates, deletes and
+ * lookups all take constant time. Expenses dated more than 90 days ago are left out of
+ * the window sums, and the few dated more than {@value #FUTURE_DAYS} days ahead wait in
+ * a sorted map until the ring buffer reaches their day.
+ */
+public class CategoryStatsView extends MaterializedView
+{
+    public static final int[] WINDOWS = {7, 30, 90};
+
+    // An expense is only judged against a category with this many expenses
+    public static final int MIN_HISTORY = 5;
+    // Multiple of the average expense of the last 30 days that is unusual
+    public static final double NORM_MULTIPLE = 5;
+    // Number of standard deviations above the decayed mean that is unusual
+    public static final double DEVIATIONS = 3;
+
+    static final int FUTURE_DAYS = 31;
+    private static final int RING_SIZE = 90 + FUTURE_DAYS;
+    // caps the weight of expenses dated years ahead, so the sums of squares cannot overflow
+    private static final double MAX_EXPONENT = 64;
+
+    private final double halfLifeDays;
+    private final LongSupplier today;
+    private final Map<String, Stats> byCategory = new HashMap<>();
+
+    /**
+     * Creates a view whose weights halve every 30 days.
+     */
+    public CategoryStatsView()
+    {
+        this(30, () -> LocalDate.now().toEpochDay());
+    }
+
+    /**
+     * @param halfLifeDays the age in days at which an expense counts half as much as one of today
+     * @param today        supplies the current epoch day
+     */
+    public CategoryStatsView(double halfLifeDays, LongSupplier today)
+    {
+        this.halfLifeDays = halfLifeDays;
+        this.today = today;
+    }
+
+    @Override
+    protected void apply(Expense expense, int sign)
+    {
+        String key = key(expense.getCategory());
+        Stats stats = byCategory.computeIfAbsent(key, k -> new Stats(expense.getCategory().trim(), today.getAsLong()));
+        stats.apply(expense.getDateOfExpense().toEpochDay(), expense.getAmount(), sign, today.getAsLong());
+        if (stats.count == 0)
+            byCategory.remove(key);
+    }
+
+    @Override
+    protected void clear()
+    {
+        byCategory.clear();
+    }
+
+    /**
+     * Returns the statistics of a category as of today, ignoring case, or null if the
+     * category has no expenses.
+     */
+    public synchronized Snapshot get(String category)
+    {
+        Stats stats = byCategory.get(key(category));
+        return stats == null ? null : stats.snapshot(today.getAsLong());
+    }
+
+    /**
+     * Returns the statistics of every category as of today, ordered by name.
+     */
+    public synchronized List<Snapshot> getAll()
+    {
+        long day = today.getAsLong();
+        Map<String, Snapshot> sorted = new TreeMap<>();
+        for (Map.Entry<String, Stats> entry: byCategory.entrySet())
+        {
+            sorted.put(entry.getKey(), entry.getValue().snapshot(day));
+        }
+        return new ArrayList<>(sorted.values());
+    }
+
+    /**
+     * Tells whether an expense that is about to be added is unusually high for its
+     * category: at least {@value #NORM_MULTIPLE} times the average expense of the category
+     * in the last 30 days, or more than {@value #DEVIATIONS} standard deviations above its
+     * time-decayed mean and twice that mean. Categories with fewer than
+     * {@value #MIN_HISTORY} expenses are never judged.
+     * <p>
+     * Only reads the statistics that are already kept, so the check takes constant time.
+     *
+     * @return why the expense is unusual, or null if it is not
+     */
+    public synchronized String findAnomaly(Expense expense)
+    {
+        Stats stats = byCategory.get(key(expense.getCategory()));
+        if (stats == null || stats.count < MIN_HISTORY)
+            return null;
+
+        Snapshot snapshot = stats.snapshot(today.getAsLong());
+        double amount = expense.getAmount();
+        String category = snapshot.getCategory();
+
+        long recentCount = snapshot.getWindowCount(1);
+        if (recentCount > 0)
+        {
+            double norm = snapshot.getWindowAmount(1) / recentCount;
+            if (norm > 0 && amount >= NORM_MULTIPLE * norm)
+                return String.format(Locale.ROOT, "$%.2f is %.1f times the average %s expense of the last 30 days ($%.2f).",
+                        amount, amount / norm, category, norm);
+        }
+
+        double mean = snapshot.getMean();
+        double deviation = snapshot.getDeviation();
+        if (mean > 0 && deviation > 0 && amount > mean + DEVIATIONS * deviation && amount > 2 * mean)
+            return String.format(Locale.ROOT, "$%.2f is %.1f standard deviations above the usual %s expense ($%.2f).",
+                    amount, (amount - mean) / deviation, category, mean);
+        return null;
+    }
+
+    private static String key(String category)
+    {
+        return category.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The statistics of one category at one moment.
+     */
+    public static class Snapshot
+    {
+        private final String category;
+        private final long count;
+        private final double mean;
+        private final double deviation;
+        private final double[] windowAmounts;
+        private final long[] windowCounts;
+
+        Snapshot(String category, long count, double mean, double deviation, double[] windowAmounts, long[] windowCounts)
+        {
+            this.category = category;
+            this.count = count;
+            this.mean = mean;
+            this.deviation = deviation;
+            this.windowAmounts = windowAmounts;
+            this.windowCounts = windowCounts;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        /**
+         * Returns the number of expenses of the category.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the time-decayed mean amount.
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * Returns the time-decayed standard deviation of the amounts.
+         */
+        public double getDeviation() {
+            return deviation;
+        }
+
+        /**
+         * Returns the amount spent in the last {@code WINDOWS[window]} days, today included.
+         */
+        public double getWindowAmount(int window) {
+            return windowAmounts[window];
+        }
+
+        /**
+         * Returns the number of expenses in the last {@code WINDOWS[window]} days, today included.
+         */
+        public long getWindowCount(int window) {
+            return windowCounts[window];
+        }
+    }
+
+    private class Stats
+    {
+        final String name;
+        long count;
+
+        // weighted sums of 1, x and x², with weights relative to the anchor day
+        long anchor;
+        double s0;
+        double s1;
+        double s2;
+
+        // daily totals of the ring buffer, and the running sums of the windows ending on windowEnd
+        final long[] days = new long[RING_SIZE];
+        final long[] dayCents = new long[RING_SIZE];
+        final int[] dayCounts = new int[RING_SIZE];
+        final long[] windowCents = new long[WINDOWS.length];
+        final long[] windowCounts = new long[WINDOWS.length];
+        long windowEnd;
+        // cents and count of the days after the ones the ring buffer can hold
+        final TreeMap<Long, long[]> later = new TreeMap<>();
+
+        Stats(String name, long today)
+        {
+            this.name = name;
+            this.anchor = today;
+            this.windowEnd = today;
+            Arrays.fill(days, Long.MIN_VALUE);
+        }
+
+        void apply(long day, double amount, int sign, long today)
+        {
+            count += sign;
+            advance(today);
+
+            double weight = Math.pow(2, Math.min(MAX_EXPONENT, (day - anchor) / halfLifeDays));
+            s0 += sign * weight;
+            s1 += sign * weight * amount;
+            s2 += sign * weight * amount * amount;
+
+            long cents = sign * Totals.toCents(amount);
+            if (day > windowEnd + FUTURE_DAYS)
+            {
+                long[] totals = later.computeIfAbsent(day, d -> new long[2]);
+                totals[0] += cents;
+                totals[1] += sign;
+                if (totals[1] == 0)
+                    later.remove(day);
+                return;
+            }
+            if (day <= windowEnd - WINDOWS[WINDOWS.length - 1])
+                return;
+
+            int slot = slot(day);
+            if (days[slot] != day)
+            {
+                // the slot holds a day that already left every window, or nothing
+                if (sign < 0)
+                    return;
+                days[slot] = day;
+                dayCents[slot] = 0;
+                dayCounts[slot] = 0;
+            }
+            dayCents[slot] += cents;
+            dayCounts[slot] += sign;
+
+            for (int w = 0; w < WINDOWS.length; w++)
+            {
+                if (day <= windowEnd && day > windowEnd - WINDOWS[w])
+                {
+                    windowCents[w] += cents;
+                    windowCounts[w] += sign;
+                }
+            }
+        }
+
+        // Moves the windows to end on the given day, and the anchor along with it
+        void advance(long today)
+        {
+            if (today <= windowEnd)
+                return;
+
+            if (today - windowEnd < WINDOWS[WINDOWS.length - 1])
+            {
+                for (long day = windowEnd + 1; day <= today; day++)
+                {
+                    for (int w = 0; w < WINDOWS.length; w++)
+                    {
+                        add(day, w, 1);
+                        add(day - WINDOWS[w], w, -1);
+                    }
+                    // the slot of the day that just left the longest window is free now
+                    moveToRing(day + FUTURE_DAYS);
+                }
+            }
+            else
+            {
+                // every window starts over, so sum the days that are in them
+                moveToRing(today + FUTURE_DAYS);
+                Arrays.fill(windowCents, 0);
+                Arrays.fill(windowCounts, 0);
+                for (int w = 0; w < WINDOWS.length; w++)
+                {
+                    for (long day = today - WINDOWS[w] + 1; day <= today; day++)
+                    {
+                        add(day, w, 1);
+                    }
+                }
+            }
+            windowEnd = today;
+
+            // keep the weights of recent expenses near 1, so the sums stay precise
+            if (today - anchor > 10 * halfLifeDays)
+            {
+                double scale = Math.pow(2, (anchor - today) / halfLifeDays);
+                s0 *= scale;
+                s1 *= scale;
+                s2 *= scale;
+                anchor = today;
+            }
+        }
+
+        // Moves the days of the far future up to the given day into the ring buffer
+        private void moveToRing(long lastDay)
+        {
+            while (!later.isEmpty() && later.firstKey() <= lastDay)
+            {
+                Map.Entry<Long, long[]> entry = later.pollFirstEntry();
+                int slot = slot(entry.getKey());
+                days[slot] = entry.getKey();
+                dayCents[slot] = entry.getValue()[0];
+                dayCounts[slot] = (int) entry.getValue()[1];
+            }
+        }
+
+        private void add(long day, int window, int sign)
+        {
+            int slot = slot(day);
+            if (days[slot] == day)
+            {
+                windowCents[window] += sign * dayCents[slot];
+                windowCounts[window] += sign * dayCounts[slot];
+            }
+        }
+
+        Snapshot snapshot(long today)
+        {
+            advance(today);
+            double mean = s0 > 0 ? s1 / s0 : 0;
+            double variance = s0 > 0 ? Math.max(0, s2 / s0 - mean * mean) : 0;
+            double[] amounts = new double[WINDOWS.length];
+            for (int w = 0; w < WINDOWS.length; w++)
+            {
+                amounts[w] = windowCents[w] / 100.0;
+            }
+            return new Snapshot(name, count, mean, Math.sqrt(variance), amounts, windowCounts.clone());
+        }
+
+        private int slot(long day)
+        {
+            return (int) Math.floorMod(day, (long) RING_SIZE);
+        }
+    }
+}
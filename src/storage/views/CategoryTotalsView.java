@@ -0,0 +1,49 @@
+package storage.views;
+
+import model.Expense;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the count and total amount of expenses per category.
+ * Categories are compared case-insensitively, like the category filter does.
+ */
+public class CategoryTotalsView extends MaterializedView
+{
+    private final Map<String, Totals> byCategory = new HashMap<>();
+
+    @Override
+    protected void apply(Expense expense, int sign)
+    {
+        String key = key(expense.getCategory());
+        Totals totals = byCategory.computeIfAbsent(key, k -> new Totals());
+        totals.apply(expense.getAmount(), sign);
+        if (totals.isEmpty())
+            byCategory.remove(key);
+    }
+
+    @Override
+    protected void clear()
+    {
+        byCategory.clear();
+    }
+
+    public synchronized long getCount(String category)
+    {
+        Totals totals = byCategory.get(key(category));
+        return totals == null ? 0 : totals.getCount();
+    }
+
+    public synchronized double getAmount(String category)
+    {
+        Totals totals = byCategory.get(key(category));
+        return totals == null ? 0 : totals.getAmount();
+    }
+
+    private static String key(String category)
+    {
+        return category.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,116 @@
+package storage.views;
+
+import model.Expense;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Indexes the expenses of the ledger by date and by category, so that queries can read
+ * only the expenses of a date range or of some categories instead of scanning the ledger.
+ * Categories are compared case-insensitively, like the category filter does.
+ */
+public class ExpenseIndexView extends MaterializedView
+{
+    private final NavigableMap<LocalDate, Map<Integer, Expense>> byDate = new TreeMap<>();
+    private final Map<String, Map<Integer, Expense>> byCategory = new HashMap<>();
+    private int size;
+
+    @Override
+    protected void apply(Expense expense, int sign)
+    {
+        String category = key(expense.getCategory());
+        if (sign > 0)
+        {
+            byDate.computeIfAbsent(expense.getDateOfExpense(), d -> new LinkedHashMap<>()).put(expense.getId(), expense);
+            if (byCategory.computeIfAbsent(category, c -> new LinkedHashMap<>()).put(expense.getId(), expense) == null)
+                size++;
+            return;
+        }
+
+        remove(byDate, expense.getDateOfExpense(), expense.getId());
+        if (remove(byCategory, category, expense.getId()))
+            size--;
+    }
+
+    @Override
+    protected void clear()
+    {
+        byDate.clear();
+        byCategory.clear();
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of indexed expenses dated between two dates, inclusive.
+     */
+    public synchronized long countBetween(LocalDate from, LocalDate to)
+    {
+        if (from.isAfter(to))
+            return 0;
+
+        long count = 0;
+        for (Map<Integer, Expense> day: byDate.subMap(from, true, to, true).values())
+        {
+            count += day.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the indexed expenses dated between two dates, inclusive, ordered by date.
+     */
+    public synchronized List<Expense> between(LocalDate from, LocalDate to)
+    {
+        List<Expense> result = new ArrayList<>();
+        if (from.isAfter(to))
+            return result;
+
+        for (Map<Integer, Expense> day: byDate.subMap(from, true, to, true).values())
+        {
+            result.addAll(day.values());
+        }
+        return result;
+    }
+
+    public synchronized long countInCategory(String category)
+    {
+        Map<Integer, Expense> expenses = byCategory.get(key(category));
+        return expenses == null ? 0 : expenses.size();
+    }
+
+    /**
+     * Returns the indexed expenses of a category, in the order they were added.
+     */
+    public synchronized List<Expense> inCategory(String category)
+    {
+        Map<Integer, Expense> expenses = byCategory.get(key(category));
+        return expenses == null ? new ArrayList<>() : new ArrayList<>(expenses.values());
+    }
+
+    private static <K> boolean remove(Map<K, Map<Integer, Expense>> index, K key, int id)
+    {
+        Map<Integer, Expense> bucket = index.get(key);
+        if (bucket == null || bucket.remove(id) == null)
+            return false;
+        if (bucket.isEmpty())
+            index.remove(key);
+        return true;
+    }
+
+    private static String key(String category)
+    {
+        return category.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,33 @@
+package storage.views;
+
+import model.Expense;
+
+/**
+ * Keeps the count and total amount of the whole ledger.
+ */
+public class LedgerTotalsView extends MaterializedView
+{
+    private Totals totals = new Totals();
+
+    @Override
+    protected void apply(Expense expense, int sign)
+    {
+        totals.apply(expense.getAmount(), sign);
+    }
+
+    @Override
+    protected void clear()
+    {
+        totals = new Totals();
+    }
+
+    public synchronized long getCount()
+    {
+        return totals.getCount();
+    }
+
+    public synchronized double getAmount()
+    {
+        return totals.getAmount();
+    }
+}
@@ -0,0 +1,43 @@
+package storage.views;
+
+import model.Expense;
+import storage.events.ExpenseEvent;
+import storage.events.ExpenseListener;
+
+/**
+ * Base class for aggregates that are kept current from the ledger's change events.
+ * <p>
+ * Every event is reduced to removing the old expense (sign -1) and adding the new
+ * one (sign +1), so a view only has to describe how a single expense contributes to it.
+ * Views are called synchronously by the writer, which is why their methods are synchronized.
+ */
+public abstract class MaterializedView implements ExpenseListener
+{
+    @Override
+    public synchronized void onEvent(ExpenseEvent event)
+    {
+        if (event.getBefore() != null)
+            apply(event.getBefore(), -1);
+        if (event.getAfter() != null)
+            apply(event.getAfter(), 1);
+    }
+
+    /**
+     * Discards the current state and recomputes the view from the given expenses.
+     * Used once after the ledger is loaded from disk.
+     *
+     * @param expenses all expenses of the ledger
+     */
+    public synchronized void rebuild(Iterable<Expense> expenses)
+    {
+        clear();
+        for (Expense expense: expenses)
+        {
+            apply(expense, 1);
+        }
+    }
+
+    protected abstract void apply(Expense expense, int sign);
+
+    protected abstract void clear();
+}
@@ -0,0 +1,43 @@
+package storage.views;
+
+import model.Expense;
+
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the count and total amount of expenses per calendar month.
+ */
+public class MonthlyTotalsView extends MaterializedView
+{
+    private final Map<YearMonth, Totals> byMonth = new HashMap<>();
+
+    @Override
+    protected void apply(Expense expense, int sign)
+    {
+        YearMonth month = YearMonth.from(expense.getDateOfExpense());
+        Totals totals = byMonth.computeIfAbsent(month, k -> new Totals());
+        totals.apply(expense.getAmount(), sign);
+        if (totals.isEmpty())
+            byMonth.remove(month);
+    }
+
+    @Override
+    protected void clear()
+    {
+        byMonth.clear();
+    }
+
+    public synchronized long getCount(YearMonth month)
+    {
+        Totals totals = byMonth.get(month);
+        return totals == null ? 0 : totals.getCount();
+    }
+
+    public synchronized double getAmount(YearMonth month)
+    {
+        Totals totals = byMonth.get(month);
+        return totals == null ? 0 : totals.getAmount();
+    }
+}
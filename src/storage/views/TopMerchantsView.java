@@ -0,0 +1,81 @@
+package storage.views;
+
+import model.Expense;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the total amount spent per merchant, where the merchant is the expense
+ * description with case and surrounding/repeated whitespace normalized.
+ */
+public class TopMerchantsView extends MaterializedView
+{
+    private final Map<String, Totals> byMerchant = new HashMap<>();
+    private final Map<String, String> displayNames = new HashMap<>();
+
+    @Override
+    protected void apply(Expense expense, int sign)
+    {
+        String key = normalize(expense.getName());
+        Totals totals = byMerchant.computeIfAbsent(key, k -> new Totals());
+        totals.apply(expense.getAmount(), sign);
+        if (totals.isEmpty())
+        {
+            byMerchant.remove(key);
+            displayNames.remove(key);
+        }
+        else
+        {
+            displayNames.putIfAbsent(key, expense.getName().trim());
+        }
+    }
+
+    @Override
+    protected void clear()
+    {
+        byMerchant.clear();
+        displayNames.clear();
+    }
+
+    /**
+     * Returns the merchants with the highest total amount, largest first.
+     * Uses a min-heap of size {@code n}, so the cost is O(m log n) for m merchants.
+     *
+     * @param n the maximum number of merchants to return
+     * @return merchant names mapped to their total amount, in descending order
+     */
+    public synchronized Map<String, Double> top(int n)
+    {
+        Map<String, Double> result = new LinkedHashMap<>();
+        if (n <= 0)
+            return result;
+
+        PriorityQueue<Map.Entry<String, Totals>> heap =
+                new PriorityQueue<>((a, b) -> Long.compare(a.getValue().getCents(), b.getValue().getCents()));
+        for (Map.Entry<String, Totals> entry: byMerchant.entrySet())
+        {
+            heap.offer(entry);
+            if (heap.size() > n)
+                heap.poll();
+        }
+
+        List<Map.Entry<String, Totals>> sorted = new ArrayList<>(heap);
+        sorted.sort((a, b) -> Long.compare(b.getValue().getCents(), a.getValue().getCents()));
+        for (Map.Entry<String, Totals> entry: sorted)
+        {
+            result.put(displayNames.get(entry.getKey()), entry.getValue().getAmount());
+        }
+        return result;
+    }
+
+    static String normalize(String description)
+    {
+        return description.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,40 @@
+package storage.views;
+
+/**
+ * Running count and amount of a group of expenses.
+ * <p>
+ * Amounts are accumulated in cents so that repeated additions and removals
+ * do not drift the way a running {@code double} sum would.
+ */
+public class Totals
+{
+    private long count;
+    private long cents;
+
+    void apply(double amount, int sign)
+    {
+        count += sign;
+        cents += sign * toCents(amount);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getAmount() {
+        return cents / 100.0;
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    static long toCents(double amount)
+    {
+        return Math.round(amount * 100);
+    }
+}
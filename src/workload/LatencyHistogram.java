@@ -0,0 +1,85 @@
+package workload;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of latencies in nanoseconds with a fixed memory footprint.
+ * <p>
+ * Values are grouped in buckets that split every power of two into 16 sub-buckets,
+ * so recorded values are kept with a relative error below 1/16 (about 6%) whatever
+ * their magnitude, and a run of any length uses the same 976 counters.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        total.incrementAndGet();
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount()
+    {
+        return total.get();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the given fraction of the recorded values fall.
+     *
+     * @param fraction a fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return the upper bound of the bucket holding that percentile, in nanoseconds
+     */
+    public long percentile(double fraction)
+    {
+        long count = total.get();
+        if (count == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += counts.get(i);
+            if (seen >= target)
+                return Math.min(max.get(), lowerBound(i + 1) - 1);
+        }
+        return max.get();
+    }
+
+    private static int indexOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long lowerBound(int index)
+    {
+        if (index < SUB_BUCKETS)
+            return index;
+        if (index >= BUCKETS)
+            return Long.MAX_VALUE;
+
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+}
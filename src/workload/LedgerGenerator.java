@@ -0,0 +1,201 @@
+package workload;
+
+import model.Expense;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates realistic synthetic expense ledgers.
+ * <p>
+ * Categories follow a skewed (Zipf-like) distribution, and so do the merchants inside each
+ * category, so a few merchants account for most rows as in real ledgers. Dates are seasonal,
+ * with more spending in December and the summer months. Amounts are log-normally distributed
+ * around a typical value per category. Every month also gets the same recurring merchants
+ * (rent, subscriptions) on fixed days.
+ * <p>
+ * Usage: {@code java workload.LedgerGenerator <dir> [rows] [years] [seed]} writes
+ * {@code expenses.csv} and {@code budget.csv} into {@code dir}, like the {@code csv_data} directory.
+ */
+public class LedgerGenerator
+{
+    private static final String[] CATEGORIES =
+            { "Food", "Transport", "Shopping", "Leisure", "Health", "Utilities", "Travel", "Education" };
+    private static final double[] TYPICAL_AMOUNTS = { 18, 12, 45, 30, 40, 80, 250, 60 };
+    private static final String[][] MERCHANTS =
+    {
+        { "Corner Grocery", "SuperMart", "Bakery Lane", "Pizza Place", "Sushi Bar", "Coffee House", "Farmers Market" },
+        { "City Metro", "Fuel Station", "Taxi Co", "Parking Garage", "Bike Share" },
+        { "Online Store", "Fashion Outlet", "Electronics Hub", "Home Depot", "Book Shop" },
+        { "Cinema", "Concert Hall", "Bowling", "Museum", "Streaming Rental" },
+        { "Pharmacy", "Dentist", "Optician", "Clinic" },
+        { "Power Company", "Water Works", "Internet Provider", "Phone Carrier" },
+        { "Airline", "Hotel", "Car Rental", "Travel Agency" },
+        { "Online Course", "Language School", "Bookstore" },
+    };
+    private static final double[] MONTH_WEIGHTS = { 7, 6, 7, 8, 8, 9, 10, 10, 8, 8, 8, 11 };
+
+    private final Random random;
+    private final double[] categoryCdf;
+    private final double[][] merchantCdf;
+    private final double[] monthCdf;
+
+    public LedgerGenerator(long seed)
+    {
+        random = new Random(seed);
+        categoryCdf = zipfCdf(CATEGORIES.length, 1.1);
+        merchantCdf = new double[MERCHANTS.length][];
+        for (int c = 0; c < MERCHANTS.length; c++)
+        {
+            merchantCdf[c] = zipfCdf(MERCHANTS[c].length, 1.3);
+        }
+        monthCdf = cdf(MONTH_WEIGHTS);
+    }
+
+    /**
+     * Creates one random expense dated in the given year.
+     *
+     * @param id   the expense ID
+     * @param year the year of the expense date
+     * @return the generated expense
+     */
+    public Expense next(int id, int year)
+    {
+        int category = pick(categoryCdf);
+        int month = pick(monthCdf) + 1;
+        LocalDate first = LocalDate.of(year, month, 1);
+        LocalDate date = first.plusDays(random.nextInt(first.lengthOfMonth()));
+        return new Expense(id, MERCHANTS[category][pick(merchantCdf[category])], amount(TYPICAL_AMOUNTS[category]),
+                date, CATEGORIES[category]);
+    }
+
+    /**
+     * Creates one random expense dated in the current year.
+     */
+    public Expense next(int id)
+    {
+        return next(id, LocalDate.now().getYear());
+    }
+
+    /**
+     * Generates a ledger of roughly {@code rows} expenses spread over the last {@code years}
+     * years (including the current one), ordered by date.
+     *
+     * @return the generated expenses
+     */
+    public List<Expense> generate(int rows, int years)
+    {
+        int lastYear = LocalDate.now().getYear();
+        int firstYear = lastYear - years + 1;
+        List<Expense> result = new ArrayList<>(rows);
+        int id = 1;
+
+        // recurring merchants, once per month
+        for (int year = firstYear; year <= lastYear && result.size() < rows; year++)
+        {
+            for (int month = 1; month <= 12 && result.size() + 3 <= rows; month++)
+            {
+                result.add(new Expense(id++, "Rent", 950, LocalDate.of(year, month, 1), "Housing"));
+                result.add(new Expense(id++, "Video Streaming", 15.99, LocalDate.of(year, month, 15), "Subscriptions"));
+                result.add(new Expense(id++, "Gym Membership", 35, LocalDate.of(year, month, 5), "Health"));
+            }
+        }
+
+        while (result.size() < rows)
+        {
+            result.add(next(id++, firstYear + random.nextInt(years)));
+        }
+
+        result.sort((a, b) -> a.getDateOfExpense().compareTo(b.getDateOfExpense()));
+        return result;
+    }
+
+    /**
+     * Writes a generated ledger into a data directory, replacing its expense file.
+     */
+    public void writeTo(Path dir, int rows, int years) throws IOException
+    {
+        Files.createDirectories(dir);
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve("expenses.csv"), StandardCharsets.UTF_8))
+        {
+            for (Expense expense: generate(rows, years))
+            {
+                writer.write(expense.AsCsvLine());
+                writer.newLine();
+            }
+        }
+
+        Path budget = dir.resolve("budget.csv");
+        if (!Files.exists(budget))
+            Files.writeString(budget, "2500.0" + System.lineSeparator());
+    }
+
+    private double amount(double typical)
+    {
+        double value = typical * Math.exp(0.6 * random.nextGaussian());
+        return Math.max(0.5, Math.round(value * 100) / 100.0);
+    }
+
+    private int pick(double[] cdf)
+    {
+        double u = random.nextDouble();
+        for (int i = 0; i < cdf.length - 1; i++)
+        {
+            if (u < cdf[i])
+                return i;
+        }
+        return cdf.length - 1;
+    }
+
+    private static double[] zipfCdf(int n, double exponent)
+    {
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            weights[i] = 1 / Math.pow(i + 1, exponent);
+        }
+        return cdf(weights);
+    }
+
+    private static double[] cdf(double[] weights)
+    {
+        double sum = 0;
+        for (double weight: weights)
+        {
+            sum += weight;
+        }
+
+        double[] result = new double[weights.length];
+        double running = 0;
+        for (int i = 0; i < weights.length; i++)
+        {
+            running += weights[i];
+            result[i] = running / sum;
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.out.println("Usage: java workload.LedgerGenerator <dir> [rows] [years] [seed]");
+            return;
+        }
+
+        Path dir = Path.of(args[0]);
+        int rows = args.length > 1 ? Integer.parseInt(args[1].replace("_", "")) : 100_000;
+        int years = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        new LedgerGenerator(seed).writeTo(dir, rows, years);
+        System.out.println("Generated " + rows + " expenses over " + years + " years in " + dir.toAbsolutePath());
+    }
+}
@@ -0,0 +1,403 @@
+package workload;
+
+import model.Expense;
+import storage.Storage;
+import storage.query.Rankings;
+import storage.repository.ExpenseRepositories;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the {@link Storage} engine with a mixed workload and reports how it behaves over time.
+ * <p>
+ * Worker threads repeatedly pick an operation according to the configured mix: adds, updates
+ * and deletes go through the same paths as the menu (including saving the expense file), and
+ * reads run the reports (totals, month and category summaries, top-N rankings and date-range
+ * scans). Every sampling interval the throughput, ledger size, expense file size, heap usage
+ * and GC activity are recorded. At the end latency percentiles per operation are computed and
+ * everything is written as CSV files and an HTML report.
+ * <p>
+ * Usage: {@code java workload.LoadTest [key=value ...]} with the keys
+ * {@code dir} (load_data), {@code rows} (100000, generated before the run, 0 keeps the
+ * existing ledger), {@code years} (3), {@code threads} (4), {@code duration} in seconds (60),
+ * {@code interval} in seconds (5), {@code reads} in percent of all operations (80),
+ * {@code adds}, {@code updates} and {@code deletes} as relative shares of the writes (60/30/10)
+ * {@code backend} as the expense storage format (csv, binary or memory) and {@code report}
+ * as the prefix of the report files (load-report).
+ */
+public class LoadTest
+{
+    private enum Operation
+    {
+        ADD, UPDATE, DELETE, SUMMARY, MONTH_SUMMARY, CATEGORY_SUMMARY, TOP_EXPENSES, DATE_RANGE_SCAN
+    }
+
+    private static final String[] REPORT_CATEGORIES = { "Food", "Transport", "Shopping", "Housing" };
+
+    private final Map<String, String> options;
+    private final Map<Operation, LatencyHistogram> latencies = new HashMap<>();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final List<Sample> samples = new ArrayList<>();
+    private volatile boolean running = true;
+    private volatile double sink; // keeps the JIT from dropping the results of read operations
+
+    public LoadTest(Map<String, String> options)
+    {
+        this.options = options;
+        for (Operation operation: Operation.values())
+        {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    public void run() throws IOException, InterruptedException
+    {
+        Path dir = Path.of(option("dir", "load_data"));
+        int rows = intOption("rows", 100_000);
+        if (rows > 0)
+        {
+            System.out.println("Generating " + rows + " expenses into " + dir.toAbsolutePath());
+            new LedgerGenerator(42).writeTo(dir, rows, intOption("years", 3));
+        }
+
+        String backend = option("backend", ExpenseRepositories.defaultBackend());
+        Storage storage = new Storage(dir.toString(), backend);
+        Path expenseFile = dir.resolve(ExpenseRepositories.BINARY.equals(backend) ? "expenses.bin" : "expenses.csv");
+
+        int threads = intOption("threads", 4);
+        long durationMillis = intOption("duration", 60) * 1000L;
+        long intervalMillis = intOption("interval", 5) * 1000L;
+
+        System.out.println("Running " + threads + " threads for " + durationMillis / 1000 + " s ...");
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+        {
+            Thread worker = new Thread(() -> work(storage), "load-worker-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long start = System.nanoTime();
+        long[] gcBefore = gcStats();
+        long lastReads = 0;
+        long lastWrites = 0;
+        long lastNanos = start;
+        long elapsedMillis = 0;
+        while (elapsedMillis < durationMillis)
+        {
+            Thread.sleep(Math.min(intervalMillis, durationMillis - elapsedMillis));
+            long now = System.nanoTime();
+            long readCount = reads.get();
+            long writeCount = writes.get();
+            elapsedMillis = (now - start) / 1_000_000;
+
+            // the last interval is usually shorter, so rates use the measured time
+            long[] gc = gcStats();
+            Runtime runtime = Runtime.getRuntime();
+            Sample sample = new Sample(elapsedMillis / 1000.0,
+                    readCount - lastReads, writeCount - lastWrites, (now - lastNanos) / 1e9,
+                    storage.snapshot().size(), Files.exists(expenseFile) ? Files.size(expenseFile) : 0,
+                    (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024),
+                    gc[0] - gcBefore[0], gc[1] - gcBefore[1]);
+            samples.add(sample);
+            lastReads = readCount;
+            lastWrites = writeCount;
+            lastNanos = now;
+            gcBefore = gc;
+
+            System.out.println(sample.toCsv());
+        }
+
+        running = false;
+        for (Thread worker: workers)
+        {
+            worker.join();
+        }
+        storage.close();
+
+        String report = option("report", "load-report");
+        writeCsv(Path.of(report + ".csv"), Path.of(report + "-latency.csv"));
+        writeHtml(Path.of(report + ".html"));
+        System.out.println("Update conflicts: " + conflicts.get());
+        System.out.println(storage.getReportCache());
+        System.out.println("Report written to " + Path.of(report + ".html").toAbsolutePath());
+    }
+
+    private void work(Storage storage)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LedgerGenerator generator = new LedgerGenerator(random.nextLong());
+        int readPercent = intOption("reads", 80);
+        int adds = intOption("adds", 60);
+        int updates = intOption("updates", 30);
+        int deletes = intOption("deletes", 10);
+
+        while (running)
+        {
+            Operation operation;
+            if (random.nextInt(100) < readPercent)
+            {
+                operation = Operation.values()[Operation.SUMMARY.ordinal()
+                        + random.nextInt(Operation.values().length - Operation.SUMMARY.ordinal())];
+            }
+            else
+            {
+                int pick = random.nextInt(Math.max(1, adds + updates + deletes));
+                operation = pick < adds ? Operation.ADD : pick < adds + updates ? Operation.UPDATE : Operation.DELETE;
+            }
+
+            long start = System.nanoTime();
+            execute(storage, operation, generator, random);
+            latencies.get(operation).record(System.nanoTime() - start);
+            if (operation.ordinal() >= Operation.SUMMARY.ordinal())
+                reads.incrementAndGet();
+            else
+                writes.incrementAndGet();
+        }
+    }
+
+    private void execute(Storage storage, Operation operation, LedgerGenerator generator, ThreadLocalRandom random)
+    {
+        LocalDate today = LocalDate.now();
+        switch (operation)
+        {
+            case ADD ->
+            {
+                Expense template = generator.next(0);
+                storage.addExpense(new Expense("Load test " + random.nextInt(1000), template.getAmount(),
+                        template.getDateOfExpense(), template.getCategory()));
+            }
+            case UPDATE ->
+            {
+                List<Expense> snapshot = storage.snapshot();
+                if (snapshot.isEmpty())
+                    return;
+                Expense before = snapshot.get(random.nextInt(snapshot.size()));
+                if (!storage.updateExpense(before, before.withAmount(before.getAmount() + 1)))
+                    conflicts.incrementAndGet();
+            }
+            case DELETE ->
+            {
+                List<Expense> snapshot = storage.snapshot();
+                if (!snapshot.isEmpty() && storage.deleteExpense(snapshot.get(random.nextInt(snapshot.size())).getId()) == null)
+                    conflicts.incrementAndGet();
+            }
+            case SUMMARY -> sink = storage.getSummary().getAmount();
+            case MONTH_SUMMARY -> sink = storage.getMonthSummary(YearMonth.from(today.minusMonths(random.nextInt(24)))).getAmount();
+            case CATEGORY_SUMMARY -> sink = storage.getCategoryTotals().getAmount(REPORT_CATEGORIES[random.nextInt(REPORT_CATEGORIES.length)]);
+            case TOP_EXPENSES ->
+            {
+                YearMonth month = YearMonth.from(today.minusMonths(random.nextInt(12)));
+                sink = Rankings.topExpenses(storage.snapshot(), 20, e -> YearMonth.from(e.getDateOfExpense()).equals(month)).size();
+            }
+            default ->
+            {
+                LocalDate from = today.minusDays(random.nextInt(365));
+                LocalDate to = from.plusDays(30);
+                double total = 0;
+                for (Expense expense: storage.snapshot())
+                {
+                    if (!expense.getDateOfExpense().isBefore(from) && !expense.getDateOfExpense().isAfter(to))
+                        total += expense.getAmount();
+                }
+                sink = total;
+            }
+        }
+    }
+
+    private void writeCsv(Path timeSeries, Path latency) throws IOException
+    {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(timeSeries, StandardCharsets.UTF_8)))
+        {
+            writer.println(Sample.CSV_HEADER);
+            for (Sample sample: samples)
+            {
+                writer.println(sample.toCsv());
+            }
+        }
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(latency, StandardCharsets.UTF_8)))
+        {
+            writer.println("operation,count,p50_us,p90_us,p99_us,p999_us,max_us");
+            for (Operation operation: Operation.values())
+            {
+                LatencyHistogram histogram = latencies.get(operation);
+                writer.println(operation + "," + histogram.getCount()
+                        + "," + micros(histogram.percentile(0.50)) + "," + micros(histogram.percentile(0.90))
+                        + "," + micros(histogram.percentile(0.99)) + "," + micros(histogram.percentile(0.999))
+                        + "," + micros(histogram.getMax()));
+            }
+        }
+    }
+
+    private void writeHtml(Path file) throws IOException
+    {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8)))
+        {
+            writer.println("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Expense tracker load test</title>");
+            writer.println("<style>body{font-family:sans-serif}table{border-collapse:collapse}"
+                    + "td,th{border:1px solid #999;padding:2px 8px;text-align:right}</style></head><body>");
+            writer.println("<h1>Expense tracker load test</h1>");
+            writer.println("<p>Options: " + options + "</p>");
+
+            writer.println("<h2>Throughput</h2>");
+            writer.println(chart());
+
+            writer.println("<h2>Latency per operation (&micro;s)</h2><table>");
+            writer.println("<tr><th>Operation</th><th>Count</th><th>p50</th><th>p90</th><th>p99</th><th>p99.9</th><th>Max</th></tr>");
+            for (Operation operation: Operation.values())
+            {
+                LatencyHistogram histogram = latencies.get(operation);
+                writer.println("<tr><td>" + operation + "</td><td>" + histogram.getCount()
+                        + "</td><td>" + micros(histogram.percentile(0.50)) + "</td><td>" + micros(histogram.percentile(0.90))
+                        + "</td><td>" + micros(histogram.percentile(0.99)) + "</td><td>" + micros(histogram.percentile(0.999))
+                        + "</td><td>" + micros(histogram.getMax()) + "</td></tr>");
+            }
+            writer.println("</table>");
+
+            writer.println("<h2>Over time</h2><table><tr>");
+            for (String column: Sample.CSV_HEADER.split(","))
+            {
+                writer.print("<th>" + column + "</th>");
+            }
+            writer.println("</tr>");
+            for (Sample sample: samples)
+            {
+                writer.print("<tr>");
+                for (String value: sample.toCsv().split(","))
+                {
+                    writer.print("<td>" + value + "</td>");
+                }
+                writer.println("</tr>");
+            }
+            writer.println("</table></body></html>");
+        }
+    }
+
+    // A minimal SVG line chart of the operations per second in each interval
+    private String chart()
+    {
+        int width = 800;
+        int height = 200;
+        double maxOps = 1;
+        for (Sample sample: samples)
+        {
+            maxOps = Math.max(maxOps, sample.opsPerSecond());
+        }
+
+        StringBuilder points = new StringBuilder();
+        for (int i = 0; i < samples.size(); i++)
+        {
+            double x = samples.size() == 1 ? 0 : (double) i / (samples.size() - 1) * width;
+            double y = height - samples.get(i).opsPerSecond() / maxOps * height;
+            points.append(String.format(Locale.ROOT, "%.1f,%.1f ", x, y));
+        }
+        return "<svg width=\"" + width + "\" height=\"" + (height + 20) + "\">"
+                + "<polyline fill=\"none\" stroke=\"steelblue\" stroke-width=\"2\" points=\"" + points + "\"/>"
+                + "<text x=\"0\" y=\"" + (height + 15) + "\">max " + Math.round(maxOps) + " ops/s</text></svg>";
+    }
+
+    private static long micros(long nanos)
+    {
+        return nanos / 1000;
+    }
+
+    private static long[] gcStats()
+    {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] { count, millis };
+    }
+
+    private String option(String key, String defaultValue)
+    {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    private int intOption(String key, int defaultValue)
+    {
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value.replace("_", ""));
+    }
+
+    /**
+     * Measurements of one sampling interval.
+     */
+    private static class Sample
+    {
+        static final String CSV_HEADER =
+                "elapsed_s,ops_per_s,reads_per_s,writes_per_s,ledger_rows,file_bytes,heap_mb,gc_count,gc_ms";
+
+        final double elapsedSeconds;
+        final double readsPerSecond;
+        final double writesPerSecond;
+        final long ledgerRows;
+        final long fileBytes;
+        final long heapMegabytes;
+        final long gcCount;
+        final long gcMillis;
+
+        Sample(double elapsedSeconds, long reads, long writes, double intervalSeconds, long ledgerRows, long fileBytes,
+               long heapMegabytes, long gcCount, long gcMillis)
+        {
+            this.elapsedSeconds = elapsedSeconds;
+            this.readsPerSecond = reads / intervalSeconds;
+            this.writesPerSecond = writes / intervalSeconds;
+            this.ledgerRows = ledgerRows;
+            this.fileBytes = fileBytes;
+            this.heapMegabytes = heapMegabytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        double opsPerSecond()
+        {
+            return readsPerSecond + writesPerSecond;
+        }
+
+        String toCsv()
+        {
+            return String.format(Locale.ROOT, "%.1f,%.1f,%.1f,%.1f,%d,%d,%d,%d,%d", elapsedSeconds, opsPerSecond(),
+                    readsPerSecond, writesPerSecond, ledgerRows, fileBytes, heapMegabytes, gcCount, gcMillis);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        Map<String, String> options = new HashMap<>();
+        for (String arg: args)
+        {
+            int equals = arg.indexOf('=');
+            if (equals <= 0)
+            {
+                System.out.println("Ignoring argument without key=value: " + arg);
+                continue;
+            }
+            options.put(arg.substring(0, equals).trim(), arg.substring(equals + 1).trim());
+        }
+
+        new LoadTest(options).run();
+    }
+}